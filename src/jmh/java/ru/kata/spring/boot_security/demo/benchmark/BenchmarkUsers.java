@@ -0,0 +1,56 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Тестовые данные для бенчмарков: пользователи с ролями, похожие на данные DataInitializer.
+ */
+final class BenchmarkUsers {
+
+    private BenchmarkUsers() {
+    }
+
+
+    /**
+     * Создает пользователя с ролями ADMIN и USER.
+     *
+     * @param id ID пользователя
+     * @return User пользователь с ролями
+     */
+    static User user(long id) {
+        Set<Role> roles = new HashSet<>();
+        roles.add(new Role(1, "ADMIN", new HashSet<>()));
+        roles.add(new Role(2, "USER", new HashSet<>()));
+        return User.builder()
+                .id(id)
+                .version(0L)
+                .userName("user" + id)
+                .lastName("Иванов")
+                .phoneNumber("123-45-67")
+                .email("user" + id + "@abc.com")
+                .password("$2a$10$Q6mP2X0yq0a6nC3yJ9r4se6Qb7K1m3sV1y8m7hQm0lQ3Qm0lQ3Qm0")
+                .roles(roles)
+                .build();
+    }
+
+
+    /**
+     * Создает список пользователей с ID от 1 до count.
+     *
+     * @param count количество пользователей
+     * @return List<User> список пользователей
+     */
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            users.add(user(id));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.repositories.RoleRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заглушка RoleRepository, хранящая роли в памяти.
+ * <p>
+ * Реализует только методы, которые использует RoleDirectory (findAll, findRoleByName, insertIfAbsent),
+ * остальные методы выбрасывают UnsupportedOperationException.
+ */
+final class InMemoryRoleRepository {
+
+    private InMemoryRoleRepository() {
+    }
+
+
+    /**
+     * Создает репозиторий с заданными ролями.
+     *
+     * @param names имена существующих ролей
+     * @return RoleRepository репозиторий ролей в памяти
+     */
+    static RoleRepository withRoles(String... names) {
+        Map<String, Role> rolesByName = new ConcurrentHashMap<>();
+        AtomicInteger sequence = new AtomicInteger();
+        for (String name : names) {
+            rolesByName.put(name, new Role(sequence.incrementAndGet(), name, new HashSet<>()));
+        }
+        return (RoleRepository) Proxy.newProxyInstance(RoleRepository.class.getClassLoader(), new Class<?>[]{RoleRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> new ArrayList<>(rolesByName.values());
+                    case "findRoleByName" -> Optional.ofNullable(rolesByName.get((String) args[0]));
+                    case "insertIfAbsent" -> {
+                        String name = (String) args[0];
+                        boolean inserted = rolesByName.putIfAbsent(name, new Role(sequence.incrementAndGet(), name, new HashSet<>())) == null;
+                        yield inserted ? 1 : 0;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryRoleRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,64 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import ru.kata.spring.boot_security.demo.helper.PasswordHashingExecutor;
+import ru.kata.spring.boot_security.demo.helper.PasswordService;
+import ru.kata.spring.boot_security.demo.security.VerifiedCredentialCache;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время кодирования пароля PasswordService.encodePassword при разной стоимости BCrypt (strength).
+ * <p>
+ * Пароль кодируется в пуле PasswordHashingExecutor, поэтому результат включает передачу задачи в пул.
+ * Значение по умолчанию BCryptPasswordEncoder - 10.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordEncodingBenchmark {
+
+    @Param({"4", "10", "12"})
+    private int strength;
+
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private PasswordService passwordService;
+
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        passwordHashingExecutor = new PasswordHashingExecutor(1, 100, Duration.ofSeconds(5), 0, meterRegistry);
+        passwordService = new PasswordService(new BCryptPasswordEncoder(strength), passwordHashingExecutor,
+                new VerifiedCredentialCache(10_000, Duration.ofSeconds(60), meterRegistry), meterRegistry);
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        passwordHashingExecutor.shutdown();
+    }
+
+
+    @Benchmark
+    public String encodePassword() {
+        return passwordService.encodePassword("password");
+    }
+}
@@ -0,0 +1,96 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.kata.spring.boot_security.demo.helper.RoleDirectory;
+import ru.kata.spring.boot_security.demo.helper.RoleService;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.repositories.RoleRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время проверки ролей RoleService.validateRoles с репозиторием ролей в памяти (без базы данных).
+ * <p>
+ * warm - справочник ролей RoleDirectory уже загружен, как после старта приложения;
+ * cold - новый пустой справочник, каждая роль ищется в репозитории.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoleResolutionBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    private final PlatformTransactionManager transactionManager = new NoOpTransactionManager();
+    private RoleRepository roleRepository;
+    private RoleService warmRoleService;
+    private User user;
+    private List<User> users;
+
+
+    @Setup
+    public void setUp() {
+        roleRepository = InMemoryRoleRepository.withRoles("ADMIN", "USER");
+        RoleDirectory roleDirectory = new RoleDirectory(roleRepository, transactionManager);
+        roleDirectory.load();
+        warmRoleService = new RoleService(roleDirectory);
+        user = BenchmarkUsers.user(1);
+        users = BenchmarkUsers.users(BATCH_SIZE);
+    }
+
+
+    @Benchmark
+    public User validateRolesWarm() {
+        return warmRoleService.validateRoles(user);
+    }
+
+
+    @Benchmark
+    public List<User> validateRolesBatchWarm() {
+        return warmRoleService.validateRoles(users);
+    }
+
+
+    @Benchmark
+    public User validateRolesCold() {
+        return new RoleService(new RoleDirectory(roleRepository, transactionManager)).validateRoles(user);
+    }
+
+
+    /**
+     * Менеджер транзакций без транзакций: RoleDirectory создает роли в REQUIRES_NEW транзакции, которая здесь не нужна.
+     */
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.kata.spring.boot_security.demo.SpringBootSecurityDemoApplication;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время запуска приложения в новой JVM: от SpringApplication.run до готовности контекста.
+ * <p>
+ * Каждый запуск выполняется в отдельном процессе (SingleShotTime, одна итерация на форк), поэтому измеряется холодный
+ * запуск, включая загрузку классов. Используется база данных H2:
+ * data = empty - пустая база данных в памяти, DataInitializer создает начальных пользователей (кодирование паролей BCrypt);
+ * data = seeded - файловая база данных, в которой начальные пользователи уже созданы, DataInitializer выполняет только
+ * один запрос проверки (перезапуск или автомасштабирование с существующими данными);
+ * data = disabled - пустая база данных в памяти, DataInitializer отключен (app.data-initializer.enabled=false).
+ * Для seeded база данных заполняется до измерения в отдельном процессе (Seeder), чтобы измеряемая JVM оставалась холодной.
+ * Влияние AppCDS можно сравнить, передав архив классов: -Djmh.args="StartupBenchmark -jvmArgsAppend -XX:SharedArchiveFile=..."
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+    private static final String MEMORY_URL = "jdbc:h2:mem:startup;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+
+    @Param({"empty", "seeded", "disabled"})
+    private String data;
+
+    private Path databaseDirectory;
+    private ConfigurableApplicationContext context;
+
+
+    @Setup(Level.Trial)
+    public void seed() throws IOException, InterruptedException {
+        if (!"seeded".equals(data)) {
+            return;
+        }
+        databaseDirectory = Files.createTempDirectory("startup-benchmark");
+        Process seeder = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Seeder.class.getName(), fileUrl(databaseDirectory))
+                .inheritIO()
+                .start();
+        if (seeder.waitFor() != 0) {
+            throw new IllegalStateException("Не удалось заполнить базу данных: код завершения " + seeder.exitValue());
+        }
+    }
+
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws IOException {
+        if (databaseDirectory != null) {
+            FileSystemUtils.deleteRecursively(databaseDirectory);
+        }
+    }
+
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        String[] args = switch (data) {
+            case "seeded" -> args(fileUrl(databaseDirectory), "none", true);
+            case "disabled" -> args(MEMORY_URL, "create-drop", false);
+            default -> args(MEMORY_URL, "create-drop", true);
+        };
+        context = new SpringApplicationBuilder(SpringBootSecurityDemoApplication.class).run(args);
+        return context;
+    }
+
+
+    /**
+     * Аргументы командной строки: в отличие от SpringApplicationBuilder.properties() (свойства по умолчанию)
+     * они переопределяют application.properties.
+     */
+    private static String[] args(String url, String ddlAuto, boolean dataInitializer) {
+        return new String[]{
+                "--server.port=0",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.properties.hibernate.show_sql=false",
+                "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                "--spring.flyway.enabled=false",
+                "--logging.level.root=WARN",
+                "--app.data-initializer.enabled=" + dataInitializer};
+    }
+
+
+    private static String fileUrl(Path directory) {
+        return "jdbc:h2:file:" + directory.resolve("startup").toAbsolutePath() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+    }
+
+
+    /**
+     * Создает схему и начальных пользователей в файловой базе данных и завершает процесс.
+     */
+    public static final class Seeder {
+
+        private Seeder() {
+        }
+
+        public static void main(String[] args) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootSecurityDemoApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run(StartupBenchmark.args(args[0], "create", true));
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kata.spring.boot_security.demo.dto.UserDTO;
+import ru.kata.spring.boot_security.demo.mapper.UserMapper;
+import ru.kata.spring.boot_security.demo.mapper.UserMapperImpl;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время преобразования User в UserDTO маппером, сгенерированным MapStruct.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMapperBenchmark {
+    private UserMapper userMapper;
+    private User user;
+    private UserDTO userDTO;
+
+
+    @Setup
+    public void setUp() {
+        userMapper = new UserMapperImpl();
+        user = BenchmarkUsers.user(1);
+        userDTO = userMapper.convertToUserDTO(user);
+    }
+
+
+    @Benchmark
+    public UserDTO convertToUserDTO() {
+        return userMapper.convertToUserDTO(user);
+    }
+
+
+    @Benchmark
+    public User convertToUser() {
+        return userMapper.convertToUser(userDTO);
+    }
+}
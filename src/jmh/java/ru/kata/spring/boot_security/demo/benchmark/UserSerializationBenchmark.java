@@ -0,0 +1,70 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.kata.spring.boot_security.demo.dto.UserDTO;
+import ru.kata.spring.boot_security.demo.mapper.UserMapperImpl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время сериализации UserDTO и списка UserDTO в JSON.
+ * <p>
+ * ObjectMapper создается тем же Jackson2ObjectMapperBuilder, что и в Spring Boot, и переиспользуется между вызовами,
+ * как в приложении. size - количество пользователей в списке (размер страницы).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSerializationBenchmark {
+
+    @Param({"20", "100", "1000"})
+    private int size;
+
+    private ObjectWriter userWriter;
+    private ObjectWriter listWriter;
+    private UserDTO user;
+    private List<UserDTO> users;
+
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        UserMapperImpl userMapper = new UserMapperImpl();
+        userWriter = objectMapper.writerFor(UserDTO.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, UserDTO.class));
+        user = userMapper.convertToUserDTO(BenchmarkUsers.user(1));
+        users = BenchmarkUsers.users(size).stream()
+                .map(userMapper::convertToUserDTO)
+                .toList();
+    }
+
+
+    @Benchmark
+    public byte[] serializeUser() throws JsonProcessingException {
+        return userWriter.writeValueAsBytes(user);
+    }
+
+
+    @Benchmark
+    public byte[] serializeUserList() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(users);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.listener.logging.SLF4JLogLevel;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import ru.kata.spring.boot_security.demo.helper.StatementCountFilter;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подключает datasource-proxy: подсчет SQL-запросов и журнал медленных запросов.
+ * <p>
+ * Количество выполненных запросов накапливается в QueryCountHolder отдельно для каждого потока,
+ * поэтому его можно получить для одного HTTP-запроса (StatementCountFilter) или одного вызова метода (тесты).
+ */
+@Configuration
+public class DataSourceProxyConfig {
+
+    /**
+     * Имя источника данных, под которым datasource-proxy учитывает запросы в QueryCountHolder.
+     */
+    public static final String DATA_SOURCE_NAME = "main";
+    private static final String SLOW_QUERY_LOGGER = "ru.kata.spring.boot_security.demo.sql.slow";
+
+
+    /**
+     * Оборачивает DataSource приложения в ProxyDataSource.
+     * <p>
+     * Запросы, выполняющиеся дольше slowQueryThreshold, записываются в журнал ru.kata.spring.boot_security.demo.sql.slow
+     * с уровнем WARN вместе со значениями параметров.
+     * Метод статический, чтобы BeanPostProcessor создавался до остальных бинов конфигурации.
+     *
+     * @param slowQueryThreshold порог медленного запроса
+     * @return BeanPostProcessor оборачивающий DataSource
+     */
+    @Bean
+    public static BeanPostProcessor dataSourceProxyPostProcessor(@Value("${app.datasource.slow-query-threshold:500ms}") Duration slowQueryThreshold) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(DATA_SOURCE_NAME)
+                            .countQuery()
+                            .logSlowQueryBySlf4j(slowQueryThreshold.toMillis(), TimeUnit.MILLISECONDS, SLF4JLogLevel.WARN, SLOW_QUERY_LOGGER)
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+
+    /**
+     * Регистрирует StatementCountFilter первым в цепочке фильтров, чтобы учитывались и запросы аутентификации.
+     *
+     * @param meterRegistry     реестр метрик
+     * @param warnThreshold     количество запросов к базе данных, при превышении которого HTTP-запрос записывается в журнал с уровнем WARN
+     * @return FilterRegistrationBean<StatementCountFilter> регистрация фильтра
+     */
+    @Bean
+    public FilterRegistrationBean<StatementCountFilter> statementCountFilter(MeterRegistry meterRegistry,
+                                                                             @Value("${app.datasource.statements-per-request.warn-threshold:20}") int warnThreshold) {
+        FilterRegistrationBean<StatementCountFilter> registration =
+                new FilterRegistrationBean<>(new StatementCountFilter(meterRegistry, warnThreshold));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
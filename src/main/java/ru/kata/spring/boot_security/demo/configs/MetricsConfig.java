@@ -0,0 +1,26 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Настройка метрик Micrometer.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Создает аспект, который измеряет время выполнения методов и классов, помеченных аннотацией @Timed.
+     * <p>
+     * Таймеры получают теги class и method, при histogram = true публикуются гистограммы для расчета перцентилей в Prometheus.
+     *
+     * @param meterRegistry реестр метрик
+     * @return TimedAspect бин аспекта
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
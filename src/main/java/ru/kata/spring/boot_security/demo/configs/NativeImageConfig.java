@@ -0,0 +1,74 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import ru.kata.spring.boot_security.demo.dto.LoginDTO;
+import ru.kata.spring.boot_security.demo.dto.RoleCountDTO;
+import ru.kata.spring.boot_security.demo.dto.TokenDTO;
+import ru.kata.spring.boot_security.demo.dto.UserBatchResultDTO;
+import ru.kata.spring.boot_security.demo.dto.UserDTO;
+import ru.kata.spring.boot_security.demo.dto.UserPageDTO;
+import ru.kata.spring.boot_security.demo.dto.UserPatchDTO;
+import ru.kata.spring.boot_security.demo.dto.UserRoleRow;
+import ru.kata.spring.boot_security.demo.dto.UserSearchDTO;
+import ru.kata.spring.boot_security.demo.dto.UserVersionRow;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.util.userValidation.CheckEmail;
+import ru.kata.spring.boot_security.demo.util.userValidation.CheckEmailValidator;
+import ru.kata.spring.boot_security.demo.util.userValidation.PasswordConstraint;
+import ru.kata.spring.boot_security.demo.util.userValidation.PasswordValidator;
+import ru.kata.spring.boot_security.demo.util.userValidation.ValidationGroups;
+
+/**
+ * Подсказки для сборки native image (профиль native).
+ * <p>
+ * Бины, сущности JPA и типы параметров и ответов контроллеров обрабатываются AOT Spring автоматически.
+ * Здесь регистрируется то, что создается или читается через рефлексию в обход контекста Spring.
+ */
+@Configuration
+@ImportRuntimeHints(NativeImageConfig.ApplicationRuntimeHints.class)
+public class NativeImageConfig {
+
+    static class ApplicationRuntimeHints implements RuntimeHintsRegistrar {
+        private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Сериализация и десериализация JSON (Jackson), в том числе сущностей User и Role в теле запроса
+            bindingRegistrar.registerReflectionHints(hints.reflection(), User.class, Role.class, UserDTO.class,
+                    UserPatchDTO.class, UserPageDTO.class, UserSearchDTO.class, UserBatchResultDTO.class, RoleCountDTO.class, LoginDTO.class, TokenDTO.class);
+            hints.reflection().registerType(TypeReference.of("ru.kata.spring.boot_security.demo.security.TokenService$TokenClaims"),
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS, MemberCategory.DECLARED_FIELDS);
+
+            // Hibernate создает строки JPQL-запросов SELECT new ... через конструктор
+            hints.reflection().registerType(UserRoleRow.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+            hints.reflection().registerType(UserVersionRow.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+
+            // Реализация UserMapper генерируется MapStruct при компиляции
+            hints.reflection().registerType(TypeReference.of("ru.kata.spring.boot_security.demo.mapper.UserMapperImpl"),
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            // Hibernate Validator создает валидаторы по аннотации @Constraint и читает ограничения полей User
+            hints.reflection().registerType(PasswordValidator.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.reflection().registerType(CheckEmailValidator.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.reflection().registerType(PasswordConstraint.class, MemberCategory.INVOKE_DECLARED_METHODS);
+            hints.reflection().registerType(CheckEmail.class, MemberCategory.INVOKE_DECLARED_METHODS);
+            hints.reflection().registerType(ValidationGroups.Create.class);
+            hints.reflection().registerType(ValidationGroups.Update.class);
+            hints.reflection().registerType(User.class, MemberCategory.DECLARED_FIELDS);
+            hints.reflection().registerType(UserPatchDTO.class, MemberCategory.DECLARED_FIELDS);
+
+            // Ресурсы, которые читаются из classpath по имени
+            hints.resources().registerPattern("hibernate-cache.conf");
+            hints.resources().registerPattern("templates/*");
+            hints.resources().registerPattern("static/**");
+            hints.resources().registerPattern("META-INF/resources/webjars/swagger-ui/**");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.kata.spring.boot_security.demo.helper.ReadWriteRoutingDataSource;
+import ru.kata.spring.boot_security.demo.helper.ReadYourWritesTracker;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разделение чтения и записи между основной базой данных и репликами (app.datasource.read.enabled=true).
+ * <p>
+ * Основная база данных настраивается свойствами spring.datasource.*, реплики - списком app.datasource.read.urls.
+ * Пул соединений каждой базы данных создается с настройками spring.datasource.hikari.*, соединения реплик - только для чтения.
+ * Транзакции @Transactional(readOnly = true) выполняются на репликах, остальные - на основной базе данных
+ * (см. ReadWriteRoutingDataSource). Пулы соединений не регистрируются как отдельные бины DataSource,
+ * поэтому в контексте один DataSource и datasource-proxy учитывает запросы ко всем базам данных.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.read.enabled", havingValue = "true")
+public class ReadWriteDataSourceConfig implements DisposableBean {
+    private static final String HIKARI_PROPERTIES = "spring.datasource.hikari";
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+
+    /**
+     * Создает источник данных, направляющий транзакции только для чтения на реплики.
+     *
+     * @param properties           настройки основной базы данных (spring.datasource.*)
+     * @param environment          окружение, из которого читаются настройки пулов соединений
+     * @param readUrls             JDBC URL реплик
+     * @param readUsername         имя пользователя реплик (по умолчанию - как у основной базы данных)
+     * @param readPassword         пароль реплик (по умолчанию - как у основной базы данных)
+     * @param readYourWritesWindow время после изменения данных, в течение которого чтение пользователя выполняется с основной базы данных
+     * @param meterRegistry        реестр метрик (datasource.routing и hikaricp.* с тегом pool)
+     * @return DataSource источник данных приложения
+     */
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                @Value("${app.datasource.read.urls}") List<String> readUrls,
+                                @Value("${app.datasource.read.username:${spring.datasource.username:}}") String readUsername,
+                                @Value("${app.datasource.read.password:${spring.datasource.password:}}") String readPassword,
+                                @Value("${app.datasource.read.read-your-writes-window:5s}") Duration readYourWritesWindow,
+                                MeterRegistry meterRegistry) {
+        HikariDataSource primary = pool(properties.initializeDataSourceBuilder().type(HikariDataSource.class), "primary",
+                environment, meterRegistry);
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < readUrls.size(); i++) {
+            HikariDataSource replica = pool(DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(readUrls.get(i).strip())
+                    .username(readUsername)
+                    .password(readPassword), "replica-" + i, environment, meterRegistry);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(primary, replicas,
+                new ReadYourWritesTracker(readYourWritesWindow, 10_000), meterRegistry);
+        routingDataSource.afterPropertiesSet();
+        // Физическое соединение получается при первом запросе, когда признак readOnly транзакции уже известен
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+
+    private HikariDataSource pool(DataSourceBuilder<HikariDataSource> builder, String name, Environment environment,
+                                  MeterRegistry meterRegistry) {
+        HikariDataSource pool = builder.build();
+        Binder.get(environment).bind(HIKARI_PROPERTIES, Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        // Пулы не являются бинами, поэтому метрики hikaricp.* подключаются явно
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        pools.add(pool);
+        return pool;
+    }
+}
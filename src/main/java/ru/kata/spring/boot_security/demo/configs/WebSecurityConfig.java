@@ -1,19 +1,38 @@
 package ru.kata.spring.boot_security.demo.configs;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.annotation.web.configurers.SessionManagementConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.session.SessionRegistryImpl;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import ru.kata.spring.boot_security.demo.helper.PasswordService;
+import ru.kata.spring.boot_security.demo.security.BCryptStrengthCalibrator;
+import ru.kata.spring.boot_security.demo.security.CachingDaoAuthenticationProvider;
+import ru.kata.spring.boot_security.demo.security.TokenAuthenticationFilter;
+import ru.kata.spring.boot_security.demo.security.TokenService;
+import ru.kata.spring.boot_security.demo.security.VerifiedCredentialCache;
+
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
@@ -25,40 +44,66 @@ import static org.springframework.security.config.Customizer.withDefaults;
 @EnableWebSecurity
 @RequiredArgsConstructor
 public class WebSecurityConfig {
+    private static final String BCRYPT = "bcrypt";
+    private static final String PBKDF2 = "pbkdf2";
     private final UserDetailsService userDetailsService;
 
+    @Value("${app.security.stateless.enabled:false}")
+    private boolean statelessEnabled;
+
+    @Value("${app.security.password.encoding-id:bcrypt}")
+    private String passwordEncodingId;
+
 
     /**
      * Настраивает безопасность HTTP-запросов.
+     * <p>
+     * По умолчанию используются HTTP-сессии с ограничением в одну сессию на пользователя.
+     * В режиме без сессий (app.security.stateless.enabled=true) сессии не создаются, а запросы аутентифицируются
+     * по подписанному токену из заголовка Authorization (см. TokenAuthenticationFilter) или по HTTP Basic.
      *
      * @param http объект HttpSecurity, используемый для настройки безопасности HTTP-запросов
+     * @param tokenService сервис токенов доступа, доступен только в режиме без сессий
      * @throws Exception если возникает ошибка конфигурации безопасности
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, ObjectProvider<TokenService> tokenService) throws Exception {
         http
                 .authorizeHttpRequests(authorizeRequests ->
                         authorizeRequests
                                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll() // Разрешить доступ к Swagger UI и OpenAPI документации
+                                .requestMatchers("/api/v1/auth/token").permitAll()
+                                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll() // Проверка состояния для балансировщика
+                                .requestMatchers("/actuator/**").hasAuthority("ADMIN")
                                 .requestMatchers("/api/v1/user").hasAnyAuthority("USER", "ADMIN")
                                 .requestMatchers("/api/v1/users/**").hasAuthority("ADMIN")
+                                .requestMatchers("/api/v1/roles/**").hasAuthority("ADMIN")
                                 .anyRequest().authenticated()
                 )
                 .httpBasic(withDefaults())
-                .csrf(AbstractHttpConfigurer::disable)
-                .sessionManagement(sessionManagement ->
-                        sessionManagement
-                                .sessionFixation(SessionManagementConfigurer.SessionFixationConfigurer::migrateSession)
-                                .maximumSessions(1)
-                                .sessionRegistry(new SessionRegistryImpl())
-                                .expiredUrl("/login?expired=true")
-                );
+                .csrf(AbstractHttpConfigurer::disable);
+
+        if (statelessEnabled) {
+            http
+                    .sessionManagement(sessionManagement ->
+                            sessionManagement.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    .addFilterBefore(new TokenAuthenticationFilter(tokenService.getObject()), BasicAuthenticationFilter.class);
+        } else {
+            http
+                    .sessionManagement(sessionManagement ->
+                            sessionManagement
+                                    .sessionFixation(SessionManagementConfigurer.SessionFixationConfigurer::migrateSession)
+                                    .maximumSessions(1)
+                                    .sessionRegistry(new SessionRegistryImpl())
+                                    .expiredUrl("/login?expired=true")
+                    );
+        }
         return http.build();
     }
 
 
     /**
-     * Настраивает AuthenticationManager для использования пользовательского UserDetailsService и BCryptPasswordEncoder.
+     * Настраивает AuthenticationManager для использования пользовательского UserDetailsService и PasswordEncoder.
      * <p>
      * Необходимо для аутентификации пользователей с использованием данных из базы данных и безопасного хранения паролей.
      *
@@ -72,15 +117,54 @@ public class WebSecurityConfig {
 
 
     /**
-     * Создает и настраивает бин для кодирования паролей с использованием BCryptPasswordEncoder.
+     * Создает провайдер аутентификации, проверяющий пароли с помощью PasswordEncoder и кеша проверенных учетных данных.
+     * <p>
+     * Повторные запросы HTTP Basic с теми же учетными данными не выполняют проверку BCrypt, пока запись в VerifiedCredentialCache не истекла.
+     * После успешной аутентификации пароль перекодируется в пуле кодирования паролей и сохраняется через userDetailsPasswordService,
+     * если его хеш создан другим алгоритмом или с меньшей стоимостью, чем текущий PasswordEncoder.
+     *
+     * @param verifiedCredentialCache    кеш недавно успешно проверенных учетных данных
+     * @param meterRegistry              реестр метрик для таймера проверки пароля
+     * @param passwordEncoder            кодировщик паролей
+     * @param userDetailsPasswordService сохранение перекодированных паролей
+     * @param passwordService            кодирование паролей в пуле кодирования паролей
+     * @return DaoAuthenticationProvider бин провайдера аутентификации
+     */
+    @Bean
+    public DaoAuthenticationProvider authenticationProvider(VerifiedCredentialCache verifiedCredentialCache, MeterRegistry meterRegistry,
+                                                            PasswordEncoder passwordEncoder,
+                                                            UserDetailsPasswordService userDetailsPasswordService,
+                                                            PasswordService passwordService) {
+        CachingDaoAuthenticationProvider authenticationProvider =
+                new CachingDaoAuthenticationProvider(verifiedCredentialCache, meterRegistry, passwordService);
+        authenticationProvider.setUserDetailsService(userDetailsService);
+        authenticationProvider.setPasswordEncoder(passwordEncoder);
+        authenticationProvider.setUserDetailsPasswordService(userDetailsPasswordService);
+        return authenticationProvider;
+    }
+
+
+    /**
+     * Создает кодировщик паролей, поддерживающий несколько алгоритмов.
      * <p>
-     * Метод используется для обеспечения безопасности хранения паролей путем их кодирования перед сохранением в базу данных.
+     * Новые пароли кодируются алгоритмом app.security.password.encoding-id (bcrypt или pbkdf2), хеш сохраняется с префиксом
+     * алгоритма, например {bcrypt}$2a$12$.... Хеши без префикса, созданные до появления префиксов, проверяются BCrypt.
+     * Стоимость BCrypt подбирается при запуске BCryptStrengthCalibrator под целевое время кодирования.
+     * Хеши без префикса, другого алгоритма или с меньшей стоимостью BCrypt перекодируются при следующей успешной аутентификации.
      *
-     * @return BCryptPasswordEncoder бин для кодирования паролей
+     * @param bCryptStrengthCalibrator калибровка стоимости BCrypt
+     * @return PasswordEncoder бин для кодирования паролей
      */
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(BCryptStrengthCalibrator bCryptStrengthCalibrator) {
+        BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(bCryptStrengthCalibrator.strength());
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, bCryptPasswordEncoder);
+        encoders.put(PBKDF2, Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(passwordEncodingId, encoders);
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bCryptPasswordEncoder);
+        return passwordEncoder;
     }
 
 
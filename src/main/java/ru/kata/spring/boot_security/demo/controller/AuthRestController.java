@@ -0,0 +1,57 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.demo.dto.LoginDTO;
+import ru.kata.spring.boot_security.demo.dto.TokenDTO;
+import ru.kata.spring.boot_security.demo.security.CustomUserDetails;
+import ru.kata.spring.boot_security.demo.security.TokenService;
+
+@RestController
+@RequestMapping(value = "/api/v1/auth")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.security.stateless.enabled", havingValue = "true")
+@Tag(name = "Auth API", description = "API для получения токенов доступа")
+public class AuthRestController {
+    private static final Logger logger = LoggerFactory.getLogger(AuthRestController.class);
+    private static final String TOKEN_TYPE = "Bearer";
+    private final AuthenticationManager authenticationManager;
+    private final TokenService tokenService;
+
+
+    /**
+     * Выдает токен доступа по имени пользователя и паролю.
+     * <p>
+     * Доступен только в режиме без сессий (app.security.stateless.enabled=true).
+     * При неверных учетных данных Spring Security возвращает статус UNAUTHORIZED (401).
+     *
+     * @param loginDTO имя пользователя и пароль
+     * @return ResponseEntity<TokenDTO> Токен доступа и срок его действия
+     */
+    @PostMapping("/token")
+    @Operation(summary = "Получить токен доступа", description = "Проверяет имя пользователя и пароль и выдает подписанный токен доступа")
+    public ResponseEntity<TokenDTO> issueToken(@Validated @RequestBody LoginDTO loginDTO) {
+        logger.info("Вызов метода issueToken для пользователя {}", loginDTO.getUserName());
+        Authentication authentication = authenticationManager.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated(loginDTO.getUserName(), loginDTO.getPassword()));
+
+        String accessToken = tokenService.issue((CustomUserDetails) authentication.getPrincipal());
+        TokenDTO tokenDTO = new TokenDTO(accessToken, TOKEN_TYPE, tokenService.getTtl().toSeconds());
+
+        return ResponseEntity.status(HttpStatus.OK).body(tokenDTO);
+    }
+}
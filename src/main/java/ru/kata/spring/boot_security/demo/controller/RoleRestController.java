@@ -0,0 +1,44 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.demo.dto.RoleCountDTO;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+@RestController
+@RequestMapping(value = "/api/v1/roles")
+@RequiredArgsConstructor
+@Tag(name = "Role API", description = "API для получения сведений о ролях")
+public class RoleRestController {
+    private static final Logger logger = LoggerFactory.getLogger(RoleRestController.class);
+    private final UserService userService;
+
+
+    /**
+     * Подсчитывает пользователей с заданной ролью через API.
+     * <p>
+     * Количество считается одним запросом по индексу таблицы user_roles, без загрузки пользователей.
+     *
+     * @param name имя роли
+     * @return ResponseEntity<RoleCountDTO> Имя роли и количество пользователей с этой ролью
+     */
+    @GetMapping("/{name}/count")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Количество пользователей с ролью", description = "Возвращает количество пользователей, которым назначена роль")
+    public ResponseEntity<RoleCountDTO> countUsers(@PathVariable String name) {
+        logger.info("Вызов метода countUsers для роли {}", name);
+        RoleCountDTO roleCountDTO = new RoleCountDTO(name, userService.countUsersByRole(name));
+
+        return ResponseEntity.status(HttpStatus.OK).body(roleCountDTO);
+    }
+}
@@ -1,32 +1,52 @@
 package ru.kata.spring.boot_security.demo.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import ru.kata.spring.boot_security.demo.dto.UserBatchResultDTO;
 import ru.kata.spring.boot_security.demo.dto.UserDTO;
-import ru.kata.spring.boot_security.demo.mapper.UserMapperWrapper;
+import ru.kata.spring.boot_security.demo.dto.UserPageDTO;
+import ru.kata.spring.boot_security.demo.dto.UserPatchDTO;
+import ru.kata.spring.boot_security.demo.dto.UserSearchDTO;
+import ru.kata.spring.boot_security.demo.exception.exception.MissingUserVersionException;
+import ru.kata.spring.boot_security.demo.exception.exception.UserVersionConflictException;
+import ru.kata.spring.boot_security.demo.helper.RoleMatch;
+import ru.kata.spring.boot_security.demo.helper.UserETags;
+import ru.kata.spring.boot_security.demo.helper.UserExportFormat;
+import ru.kata.spring.boot_security.demo.helper.UserExportWriter;
 import ru.kata.spring.boot_security.demo.model.User;
 import ru.kata.spring.boot_security.demo.security.CustomUserDetails;
 import ru.kata.spring.boot_security.demo.service.UserService;
 import ru.kata.spring.boot_security.demo.util.userValidation.ValidationGroups;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping(value = "/api/v1/users")
@@ -36,24 +56,102 @@ import java.util.List;
 public class UserRestController {
     private static final Logger logger = LoggerFactory.getLogger(UserRestController.class);
     private final UserService userService;
-    private final UserMapperWrapper userMapperWrapper;
+    private final ObjectMapper objectMapper;
+    private static final String IF_MATCH_REQUIRED = "Для частичного обновления необходим заголовок If-Match с ETag пользователя";
+    private static final String IF_MATCH_OUTDATED = "ETag %s не соответствует текущей версии пользователя с ID %d";
 
 
     /**
-     * Получает всех пользователей через API.
+     * Получает страницу пользователей через API (курсорная пагинация по ID).
      * <p>
-     * Метод проверен через Postman.
+     * Для получения следующей страницы значение поля nextCursor из ответа передается в параметре after.
+     * Ответ содержит ETag страницы. Если он совпадает с заголовком If-None-Match, возвращается статус NOT_MODIFIED (304)
+     * без загрузки пользователей.
+     * Если указан параметр role (можно повторять: ?role=ADMIN&role=USER), возвращаются только пользователи с хотя бы одной
+     * из ролей (match=any) или со всеми ролями (match=all). Отфильтрованная страница возвращается без ETag.
+     * ETag и страница читаются в одной транзакции только для чтения, то есть через одно соединение: при разделении
+     * чтения и записи оба запроса выполняются на одной реплике, и ETag не может оказаться новее данных страницы.
      *
-     * @return ResponseEntity<List < UserDTO>> Список пользователей в виде UserDTO
+     * @param after      ID, после которого начинается страница (если не указан - первая страница)
+     * @param limit      размер страницы
+     * @param roles      имена ролей для фильтрации (если не указаны - все пользователи)
+     * @param match      способ фильтрации по нескольким ролям: "any" (по умолчанию) или "all", для другого значения - статус BAD_REQUEST
+     * @param webRequest текущий запрос, используется для проверки If-None-Match
+     * @return ResponseEntity<UserPageDTO> Страница пользователей в виде UserDTO и курсор следующей страницы
      */
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    @Operation(summary = "Получить всех пользователей", description = "Возвращает список всех пользователей")
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        logger.info("Вызов метода getAllUsers");
-        List<UserDTO> userDTO = userService.getAllUsers();
+    @Transactional(readOnly = true)
+    @Operation(summary = "Получить страницу пользователей",
+            description = "Возвращает страницу пользователей, следующих за курсором after, при необходимости отфильтрованных по ролям")
+    public ResponseEntity<UserPageDTO> getAllUsers(@RequestParam(required = false) Long after,
+                                                   @RequestParam(defaultValue = "50") int limit,
+                                                   @RequestParam(name = "role", required = false) List<String> roles,
+                                                   @RequestParam(defaultValue = "any") String match,
+                                                   WebRequest webRequest) {
+        logger.info("Вызов метода getAllUsers с параметрами after = {}, limit = {}, role = {}, match = {}", after, limit, roles, match);
+        if (roles != null && !roles.isEmpty()) {
+            UserPageDTO userPageDTO = userService.getUsersByRoles(roles, RoleMatch.fromValue(match), after, limit);
+            return ResponseEntity.status(HttpStatus.OK).body(userPageDTO);
+        }
 
-        return ResponseEntity.status(HttpStatus.OK).body(userDTO);
+        String eTag = userService.getUsersPageETag(after, limit);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        UserPageDTO userPageDTO = userService.getAllUsers(after, limit);
+
+        return ResponseEntity.status(HttpStatus.OK).eTag(eTag).body(userPageDTO);
+    }
+
+
+    /**
+     * Ищет пользователей через API по началу имени, фамилии или email (без учета регистра).
+     * <p>
+     * Результаты отсортированы по релевантности: точное совпадение имени, затем совпадения по началу имени, фамилии и email.
+     *
+     * @param q    строка поиска (не менее 2 символов, иначе статус BAD_REQUEST)
+     * @param page номер страницы, начиная с 0
+     * @param size размер страницы
+     * @return ResponseEntity<UserSearchDTO> Страница найденных пользователей в виде UserDTO
+     */
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Поиск пользователей", description = "Ищет пользователей по началу имени, фамилии или email без учета регистра")
+    public ResponseEntity<UserSearchDTO> searchUsers(@RequestParam String q,
+                                                     @RequestParam(defaultValue = "0") int page,
+                                                     @RequestParam(defaultValue = "20") int size) {
+        logger.info("Вызов метода searchUsers с параметрами q = {}, page = {}, size = {}", q, page, size);
+        UserSearchDTO userSearchDTO = userService.searchUsers(q, page, size);
+
+        return ResponseEntity.status(HttpStatus.OK).body(userSearchDTO);
+    }
+
+
+    /**
+     * Потоково выгружает всех пользователей через API в формате NDJSON или CSV.
+     * <p>
+     * Пользователи читаются из базы данных курсором и записываются в HTTP ответ по одному,
+     * поэтому объем занимаемой памяти не зависит от количества пользователей, а первые байты ответа отправляются сразу.
+     *
+     * @param format   формат выгрузки: "ndjson" (по умолчанию) или "csv", для другого значения - статус BAD_REQUEST
+     * @param response HTTP ответ, в который записываются пользователи
+     * @throws IOException если запись в HTTP ответ не удалась
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Выгрузить всех пользователей", description = "Потоково выгружает всех пользователей в формате NDJSON или CSV")
+    public void exportUsers(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        logger.info("Вызов метода exportUsers с параметром format = {}", format);
+        UserExportFormat exportFormat = UserExportFormat.fromValue(format);
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + exportFormat.getFileName() + "\"");
+
+        UserExportWriter userExportWriter = new UserExportWriter(exportFormat, objectMapper, response.getOutputStream());
+        userService.exportUsers(userExportWriter);
+        userExportWriter.flush();
     }
 
 
@@ -61,18 +159,27 @@ public class UserRestController {
      * Получает пользователя по ID через API.
      * <p>
      * Метод проверен через Postman.
+     * Ответ содержит ETag, вычисленный по версии пользователя. Если он совпадает с заголовком If-None-Match,
+     * возвращается статус NOT_MODIFIED (304) без загрузки пользователя.
+     * ETag и пользователь читаются в одной транзакции только для чтения (на одной реплике, см. getAllUsers).
      *
-     * @param id ID пользователя
+     * @param id         ID пользователя
+     * @param webRequest текущий запрос, используется для проверки If-None-Match
      * @return ResponseEntity<UserDTO> Пользователь в виде UserDTO
      */
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
     @Operation(summary = "Получить пользователя по ID", description = "Возвращает пользователя по его ID")
-    public ResponseEntity<UserDTO> getUserById(@PathVariable long id) {
+    public ResponseEntity<UserDTO> getUserById(@PathVariable long id, WebRequest webRequest) {
         logger.info("Вызов метода getUserById с параметром id = {}", id);
+        Optional<String> eTag = userService.getUserETag(id);
+        if (eTag.isPresent() && webRequest.checkNotModified(eTag.get())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).build();
+        }
         UserDTO userDTO = userService.getUserById(id);
 
-        return ResponseEntity.status(HttpStatus.OK).body(userDTO);
+        return ResponseEntity.status(HttpStatus.OK).eTag(eTag.orElse(null)).body(userDTO);
     }
 
 
@@ -96,6 +203,26 @@ public class UserRestController {
     }
 
 
+    /**
+     * Создает группу новых пользователей через API.
+     * <p>
+     * Каждый пользователь валидируется отдельно: невалидные пользователи не создаются и не мешают созданию остальных.
+     * Пользователи и их роли сохраняются пакетными INSERT в одной транзакции.
+     *
+     * @param users список объектов User, содержащих данные новых пользователей
+     * @return ResponseEntity<List < UserBatchResultDTO>> Отчет по каждому пользователю в порядке запроса
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Создать группу пользователей", description = "Создает группу новых пользователей и возвращает отчет по каждому из них")
+    public ResponseEntity<List<UserBatchResultDTO>> createUsers(@RequestBody List<User> users) {
+        logger.info("Вызов метода createUsers, количество пользователей = {}", users.size());
+        List<UserBatchResultDTO> results = userService.saveUsers(users);
+
+        return ResponseEntity.status(HttpStatus.OK).body(results);
+    }
+
+
     /**
      * Обновляет пользователя по ID через API.
      * <p>
@@ -119,6 +246,55 @@ public class UserRestController {
     }
 
 
+    /**
+     * Частично обновляет пользователя через API: изменяются только переданные поля.
+     * <p>
+     * Заголовок If-Match должен содержать ETag пользователя, полученный из GET /api/v1/users/{id}.
+     * Если заголовка нет, возвращается статус PRECONDITION_REQUIRED (428). Если пользователь был изменен после получения ETag,
+     * возвращается статус CONFLICT (409). Ответ содержит новый ETag пользователя.
+     *
+     * @param id      ID пользователя
+     * @param ifMatch значение заголовка If-Match
+     * @param patch   поля, которые необходимо изменить
+     * @return ResponseEntity<UserDTO> Обновленный пользователь в виде UserDTO
+     */
+    @PatchMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Частично обновить пользователя", description = "Обновляет только переданные поля пользователя, если его версия совпадает с If-Match")
+    public ResponseEntity<UserDTO> patchUser(@PathVariable long id,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             @Validated @RequestBody UserPatchDTO patch) {
+        logger.info("Вызов метода patchUser с параметрами id = {}, If-Match = {}", id, ifMatch);
+        if (ifMatch == null) {
+            throw new MissingUserVersionException(IF_MATCH_REQUIRED);
+        }
+        long version = UserETags.parseVersion(id, ifMatch)
+                .orElseThrow(() -> new UserVersionConflictException(String.format(IF_MATCH_OUTDATED, ifMatch, id)));
+        UserDTO userDTO = userService.patchUser(id, version, patch);
+
+        return ResponseEntity.status(HttpStatus.OK).eTag(UserETags.format(id, version + 1)).body(userDTO);
+    }
+
+
+    /**
+     * Удаляет пользователей с заданными ID через API в одной транзакции.
+     * <p>
+     * ID передаются через запятую: DELETE /api/v1/users?ids=1,2,3. Несуществующие ID пропускаются.
+     * Длина адреса запроса ограничена (server.max-http-request-header-size), большие списки следует разбивать на несколько запросов.
+     *
+     * @param ids ID пользователей, которые должны быть удалены
+     * @return ResponseEntity<String> Сообщение с количеством удаленных пользователей
+     */
+    @DeleteMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Удалить пользователей", description = "Удаляет пользователей с заданными ID в одной транзакции")
+    public ResponseEntity<String> deleteUsers(@RequestParam List<Long> ids) {
+        logger.info("Вызов метода deleteUsers для {} ID", ids.size());
+        String resultMessage = userService.deleteUsers(ids);
+        return ResponseEntity.ok(resultMessage);
+    }
+
+
     /**
      * Удаляет пользователя по ID через API.
      * <p>
@@ -144,6 +320,7 @@ public class UserRestController {
      * <p>
      * Метод проверен через Postman.
      * Возвращает данные непосредственно того пользователя, который прошел аутентификацию.
+     * Данные загружаются по ID из principal: при аутентификации по токену principal содержит только ID, имя и роли.
      *
      * @return ResponseEntity<UserDTO> Аутентифицированный пользователь в виде UserDTO
      */
@@ -155,7 +332,7 @@ public class UserRestController {
 
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         CustomUserDetails customUserDetails = (CustomUserDetails) auth.getPrincipal();
-        UserDTO userDTO = userMapperWrapper.convertToUserDTO(customUserDetails.getUser());
+        UserDTO userDTO = userService.getUserById(customUserDetails.getUser().getId());
         logger.info("Получены данные аутентифицированного пользователя через API: {}", userDTO);
 
         return ResponseEntity.status(HttpStatus.OK).body(userDTO);
@@ -1,132 +1,98 @@
 package ru.kata.spring.boot_security.demo.dataInitializers;
 
 import lombok.RequiredArgsConstructor;
-import org.jetbrains.annotations.NotNull;
-import org.springframework.context.ApplicationListener;
-import org.springframework.context.event.ContextRefreshedEvent;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.helper.RoleDirectory;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
-import ru.kata.spring.boot_security.demo.repositories.RoleRepository;
 import ru.kata.spring.boot_security.demo.repositories.UserRepository;
 
 import jakarta.transaction.Transactional;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Инициализирует данные для приложения при запуске. Чтобы гарантировать наличие необходимых ролей и пользователей в БД
+ * <p>
+ * Выполняется один раз после запуска контекста (ApplicationRunner), до события ApplicationReadyEvent,
+ * поэтому созданные роли попадают в RoleDirectory при его загрузке.
+ * Если все начальные пользователи уже существуют, выполняется только один запрос и пароли не кодируются.
+ * Инициализацию можно отключить свойством app.data-initializer.enabled=false (например, для дополнительных экземпляров
+ * при автомасштабировании, когда данные уже созданы).
  */
 @Component
 @RequiredArgsConstructor
-public class DataInitializer implements ApplicationListener<ContextRefreshedEvent> {
-    private static final String ROLE_NOT_FOUND = "Роль не найдена.";
-    private static UserData ADMIN;
-    private static UserData USER;
+public class DataInitializer implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(DataInitializer.class);
+    private static final List<UserData> USERS = List.of(
+            new UserData("admin", "Иванов", "123-45-67", "admin@abc.com", "admin", Set.of("ADMIN", "USER")),
+            new UserData("user", "Севастьянов", "321-65-98", "user@abc.com", "user", Set.of("USER")));
+    private static final Set<String> USER_NAMES = USERS.stream().map(UserData::getUserName).collect(Collectors.toSet());
+
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final RoleDirectory roleDirectory;
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${app.data-initializer.enabled:true}")
+    private boolean enabled;
 
 
     /**
-     * Запускает всю цепочку методов для инициализации базы данных.
+     * Создает начальных пользователей и их роли, если их еще нет.
      * <p>
-     * Метод выполняется в транзакции и запускает следующие шаги инициализации:
-     * 1. Создание ролей, если они еще не существуют.
-     * 2. Создание данных для пользователей (администратора и обычного пользователя).
-     * 3. Создание пользователей в базе данных, используя созданные данные.
+     * Метод выполняется в транзакции:
+     * 1. Одним запросом подсчитывает существующих начальных пользователей. Если существуют все, инициализация завершается.
+     * 2. Иначе создает отсутствующих пользователей вместе с их ролями.
      *
-     * @param event аргументы командной строки (не используются)
+     * @param args аргументы командной строки (не используются)
      */
     @Transactional
     @Override
-    public void onApplicationEvent(@NotNull ContextRefreshedEvent event) {
-        initializeRoles();
-        initializeUserData();
-        initializeUsers();
-    }
-
-
-    /**
-     * Инициализирует роли, если они еще не существуют в базе данных.
-     * <p>
-     * Метод создает роли "ADMIN" и "USER", если они еще не существуют, вызывая метод createRoleIfNotFound.
-     */
-    private void initializeRoles() {
-        createRoleIfNotFound("ADMIN");
-        createRoleIfNotFound("USER");
-    }
-
-
-    /**
-     * Проверяет существование роли и создает её при необходимости.
-     * <p>
-     * Метод проверяет, существует ли роль с указанным именем в базе данных.
-     * Если роль не существует, создается и сохраняется новая роль.
-     *
-     * @param roleName имя роли, которую необходимо проверить и создать при необходимости
-     */
-    private void createRoleIfNotFound(String roleName) {
-        if (!roleRepository.existsByName(roleName)) {
-            roleRepository.save(new Role(roleName));
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            logger.info("Инициализация данных отключена (app.data-initializer.enabled=false)");
+            return;
         }
+        if (userRepository.countByUserNameIn(USER_NAMES) == USERS.size()) {
+            logger.info("Начальные пользователи уже существуют, инициализация данных не требуется");
+            return;
+        }
+        USERS.forEach(this::createUserIfNotFound);
     }
 
 
     /**
-     * Создает данные для двух пользователей (администратора и обычного пользователя), используя роли, созданные на предыдущем шаге.
-     * <p>
-     * Метод перезагружает роли после их создания и создает объекты UserData для администратора и обычного пользователя,
-     * включая их имена, фамилии, телефонные номера, электронные почты, пароли и наборы ролей.
-     */
-    private void initializeUserData() {
-        // Перезагружаем роли после их создания
-        Role adminRole = roleRepository.findRoleByName("ADMIN").orElseThrow(() -> new RuntimeException(ROLE_NOT_FOUND));
-        Role userRole = roleRepository.findRoleByName("USER").orElseThrow(() -> new RuntimeException(ROLE_NOT_FOUND));
-
-        ADMIN = new UserData(
-                "admin", "Иванов", "123-45-67", "admin@abc.com",
-                bCryptPasswordEncoder.encode("admin"), Set.of(adminRole, userRole));
-
-        USER = new UserData(
-                "user", "Севастьянов", "321-65-98", "user@abc.com",
-                bCryptPasswordEncoder.encode("user"), Set.of(userRole));
-    }
-
-
-    /**
-     * Создает пользователей в базе данных, используя данные, созданные на предыдущем шаге.
-     * <p>
-     * Метод инициализирует базу данных пользователями, вызывая метод createUserIfNotFound с предварительно определенными данными для администратора и пользователя.
-     */
-    private void initializeUsers() {
-        createUserIfNotFound(ADMIN);
-        createUserIfNotFound(USER);
-    }
-
-
-    /**
-     * Проверяет существование пользователей и создает их при необходимости.
+     * Проверяет существование пользователя и создает его при необходимости.
      * <p>
-     * Метод ищет пользователей по имени пользователя (userName). Если пользователи с таким именем не найдены, создается и сохраняется новый пользователь.
+     * Метод ищет пользователя по имени пользователя (userName). Если пользователь с таким именем не найден,
+     * его роли находятся или создаются через RoleDirectory, пароль кодируется, и новый пользователь сохраняется.
      *
      * @param userData объект UserData, содержащий данные для создания нового пользователя
      */
     private void createUserIfNotFound(UserData userData) {
         List<User> users = userRepository.findByUserName(userData.getUserName());
         if (users.isEmpty()) {
+            Set<Role> roles = userData.getRoleNames().stream()
+                    .map(roleDirectory::getOrCreate)
+                    .collect(Collectors.toSet());
             User user = User.builder()
                     .userName(userData.getUserName())
                     .lastName(userData.getLastName())
                     .phoneNumber(userData.getPhone())
                     .email(userData.getEmail())
-                    .password(userData.getPassword())
-                    .roles(userData.getRoles())
+                    .password(passwordEncoder.encode(userData.getPassword()))
+                    .roles(roles)
                     .build();
             userRepository.save(user);
+            logger.info("Создан начальный пользователь {}", userData.getUserName());
         }
     }
 
 }
-
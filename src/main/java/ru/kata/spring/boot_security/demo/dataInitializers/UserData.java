@@ -2,27 +2,26 @@ package ru.kata.spring.boot_security.demo.dataInitializers;
 
 import lombok.Builder;
 import lombok.Data;
-import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
-import ru.kata.spring.boot_security.demo.model.Role;
 
 import java.util.Set;
 
 /**
  * Используется для создания объектов пользователя
+ * <p>
+ * Содержит исходный пароль и имена ролей: пароль кодируется, а роли определяются только при создании пользователя.
  */
 @Data
 @Builder
 @RequiredArgsConstructor
-@ToString(exclude = "roles") // Исключить поле users из метода toString
-@EqualsAndHashCode(exclude = "roles") // Исключить поле users из методов equals и hashCode
+@ToString(exclude = "password") // Исключить пароль из метода toString
 public final class UserData {
     private final String userName;
     private final String lastName;
     private final String phone;
     private final String email;
     private final String password;
-    private final Set<Role> roles;
+    private final Set<String> roleNames;
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Используется для передачи учетных данных при получении токена доступа.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoginDTO {
+
+    @NotBlank(message = "Имя не может быть пустым")
+    private String userName;
+
+    @NotBlank(message = "Пароль не может быть пустым")
+    private String password;
+
+}
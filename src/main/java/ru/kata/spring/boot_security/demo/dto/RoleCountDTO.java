@@ -0,0 +1,19 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Используется для представления количества пользователей с заданной ролью.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RoleCountDTO {
+
+    private String name;
+
+    private long count;
+
+}
@@ -0,0 +1,23 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Используется для представления выданного токена доступа.
+ * <p>
+ * Токен передается в заголовке "Authorization: Bearer {accessToken}", поле "expiresIn" - срок действия в секундах.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenDTO {
+
+    private String accessToken;
+
+    private String tokenType;
+
+    private long expiresIn;
+
+}
@@ -0,0 +1,45 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Используется для представления результата создания одного пользователя при пакетном создании.
+ * <p>
+ * Поле "index" - позиция пользователя в запросе, "id" - ID созданного пользователя,
+ * "errors" - ошибки валидации (ключом является имя поля, а значением - сообщение об ошибке).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBatchResultDTO {
+
+    private int index;
+
+    private Status status;
+
+    private Long id;
+
+    private Map<String, String> errors;
+
+
+    public static UserBatchResultDTO created(int index, Long id) {
+        return new UserBatchResultDTO(index, Status.CREATED, id, Map.of());
+    }
+
+    public static UserBatchResultDTO invalid(int index, Map<String, String> errors) {
+        return new UserBatchResultDTO(index, Status.INVALID, null, errors);
+    }
+
+
+    /**
+     * Статус создания пользователя.
+     */
+    public enum Status {
+        CREATED,
+        INVALID
+    }
+}
@@ -0,0 +1,24 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Используется для представления одной страницы списка пользователей при курсорной (keyset) пагинации.
+ * <p>
+ * Поле "nextCursor" содержит ID последнего пользователя на странице, который передается в параметре "after"
+ * для получения следующей страницы. Если следующей страницы нет, поле равно null.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPageDTO {
+
+    private List<UserDTO> users;
+
+    private Long nextCursor;
+
+}
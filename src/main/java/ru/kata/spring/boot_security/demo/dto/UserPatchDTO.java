@@ -0,0 +1,43 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.util.userValidation.PasswordConstraint;
+
+import java.util.Set;
+
+/**
+ * Используется для частичного обновления пользователя (PATCH-запросы).
+ * <p>
+ * Изменяются только переданные поля: поле со значением null (или отсутствующее в запросе) не изменяется.
+ * Если передано поле "roles", роли пользователя заменяются переданным набором.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPatchDTO {
+
+    @Pattern(regexp = ".*\\S.*", message = "Имя не может быть пустым")
+    private String userName;
+
+    @Pattern(regexp = ".*\\S.*", message = "Фамилия не может быть пустой")
+    private String lastName;
+
+    @Pattern(regexp = "\\d{3}-\\d{2}-\\d{2}", message = "please use pattern XXX-XX-XX")
+    private String phoneNumber;
+
+    private String email;
+
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    @PasswordConstraint(optional = true)
+    private String password;
+
+    @Size(min = 1, message = "Необходимо выбрать хотя бы одну роль")
+    private Set<Role> roles;
+
+}
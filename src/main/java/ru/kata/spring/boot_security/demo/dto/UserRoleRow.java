@@ -0,0 +1,11 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+/**
+ * Строка результата запроса на чтение пользователей: данные пользователя и одна из его ролей.
+ * <p>
+ * Создается напрямую в JPQL-запросе (конструкторное выражение SELECT new ...), без загрузки сущностей User и Role.
+ * У пользователя с несколькими ролями несколько строк, у пользователя без ролей - одна строка с roleId и roleName, равными null.
+ */
+public record UserRoleRow(Long id, String userName, String lastName, String phoneNumber, String email,
+                          Integer roleId, String roleName) {
+}
@@ -0,0 +1,26 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Используется для представления одной страницы результатов поиска пользователей.
+ * <p>
+ * Пользователи отсортированы по релевантности. Общее количество найденных пользователей не считается:
+ * поле "hasNext" показывает, есть ли следующая страница (page + 1).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSearchDTO {
+
+    private List<UserDTO> users;
+
+    private int page;
+
+    private boolean hasNext;
+
+}
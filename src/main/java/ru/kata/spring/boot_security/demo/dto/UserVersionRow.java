@@ -0,0 +1,7 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+/**
+ * ID и версия пользователя. Создается напрямую в JPQL-запросе и используется для вычисления ETag страницы пользователей.
+ */
+public record UserVersionRow(Long id, Long version) {
+}
@@ -0,0 +1,19 @@
+package ru.kata.spring.boot_security.demo.exception.exception;
+
+/**
+ * Исключение InvalidRequestParameterException наследуется от RuntimeException.
+ * <p>
+ * Служит для обработки ситуации, когда параметр запроса имеет недопустимое значение (например, слишком короткая строка поиска).
+ */
+public class InvalidRequestParameterException extends RuntimeException {
+
+    /**
+     * Конструктор, принимающий сообщение об ошибке.
+     *
+     * @param message сообщение об ошибке
+     */
+    public InvalidRequestParameterException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,19 @@
+package ru.kata.spring.boot_security.demo.exception.exception;
+
+/**
+ * Исключение MissingUserVersionException наследуется от RuntimeException.
+ * <p>
+ * Служит для обработки ситуации, когда запрос на частичное обновление пользователя не содержит заголовок If-Match с его версией.
+ */
+public class MissingUserVersionException extends RuntimeException {
+
+    /**
+     * Конструктор, принимающий сообщение об ошибке.
+     *
+     * @param message сообщение об ошибке
+     */
+    public MissingUserVersionException(String message) {
+        super(message);
+    }
+
+}
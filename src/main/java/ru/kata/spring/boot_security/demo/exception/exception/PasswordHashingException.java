@@ -0,0 +1,20 @@
+package ru.kata.spring.boot_security.demo.exception.exception;
+
+/**
+ * Исключение PasswordHashingException наследуется от RuntimeException.
+ * <p>
+ * Служит для обработки ситуации, когда пароль не может быть закодирован: пул кодирования паролей перегружен
+ * (очередь заполнена дольше допустимого времени ожидания) или кодирование было прервано.
+ */
+public class PasswordHashingException extends RuntimeException {
+
+    /**
+     * Конструктор, принимающий сообщение об ошибке и причину.
+     *
+     * @param message сообщение об ошибке
+     * @param cause   причина ошибки (исходное исключение, которое привело к этому исключению)
+     */
+    public PasswordHashingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
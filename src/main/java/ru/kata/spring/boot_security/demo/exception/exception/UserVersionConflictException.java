@@ -0,0 +1,20 @@
+package ru.kata.spring.boot_security.demo.exception.exception;
+
+/**
+ * Исключение UserVersionConflictException наследуется от RuntimeException.
+ * <p>
+ * Служит для обработки ситуации, когда пользователь был изменен после получения клиентом его версии (ETag),
+ * и частичное обновление не может быть применено.
+ */
+public class UserVersionConflictException extends RuntimeException {
+
+    /**
+     * Конструктор, принимающий сообщение об ошибке.
+     *
+     * @param message сообщение об ошибке
+     */
+    public UserVersionConflictException(String message) {
+        super(message);
+    }
+
+}
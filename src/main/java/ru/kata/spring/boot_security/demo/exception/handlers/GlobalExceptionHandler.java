@@ -4,8 +4,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import ru.kata.spring.boot_security.demo.exception.exception.PasswordHashingException;
 import ru.kata.spring.boot_security.demo.exception.exception.UserIncorrectData;
 
 /**
@@ -33,4 +35,38 @@ public class GlobalExceptionHandler {
 
         return new ResponseEntity<>(data, HttpStatus.INTERNAL_SERVER_ERROR);
     }
+
+
+    /**
+     * Обрабатывает исключение PasswordHashingException, возникающее, когда пул кодирования паролей перегружен.
+     * <p>
+     * Клиенту возвращается статус SERVICE_UNAVAILABLE, чтобы он повторил запрос позже.
+     *
+     * @param exception исключение типа PasswordHashingException.
+     * @return ResponseEntity, содержащий объект UserIncorrectData и статус HTTP ответа SERVICE_UNAVAILABLE (503).
+     */
+    @ExceptionHandler(PasswordHashingException.class)
+    public ResponseEntity<UserIncorrectData> handlePasswordHashingException(PasswordHashingException exception) {
+        logger.error("Произошла ошибка при кодировании пароля: ", exception);
+        UserIncorrectData data = new UserIncorrectData();
+        data.setInfo(exception.getMessage());
+
+        return new ResponseEntity<>(data, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+
+    /**
+     * Обрабатывает исключение AuthenticationException, возникающее при неверных учетных данных на эндпоинте выдачи токена.
+     *
+     * @param exception исключение типа AuthenticationException.
+     * @return ResponseEntity, содержащий объект UserIncorrectData и статус HTTP ответа UNAUTHORIZED (401).
+     */
+    @ExceptionHandler(AuthenticationException.class)
+    public ResponseEntity<UserIncorrectData> handleAuthenticationException(AuthenticationException exception) {
+        logger.warn("Ошибка аутентификации: {}", exception.getMessage());
+        UserIncorrectData data = new UserIncorrectData();
+        data.setInfo(exception.getMessage());
+
+        return new ResponseEntity<>(data, HttpStatus.UNAUTHORIZED);
+    }
 }
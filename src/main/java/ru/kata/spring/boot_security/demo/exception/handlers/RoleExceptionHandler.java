@@ -2,10 +2,13 @@ package ru.kata.spring.boot_security.demo.exception.handlers;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import ru.kata.spring.boot_security.demo.exception.exception.NoSuchRoleException;
 import ru.kata.spring.boot_security.demo.exception.exception.RoleCreationException;
 import ru.kata.spring.boot_security.demo.exception.exception.UserIncorrectData;
 
@@ -15,6 +18,7 @@ import ru.kata.spring.boot_security.demo.exception.exception.UserIncorrectData;
  * в них сообщениями. Возвращает в Http ответе ResponseEntity в теле которого содержатся сообщения парсированные в формат Json.
  */
 @ControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE) // проверяется раньше GlobalExceptionHandler, который обрабатывает любые Exception
 public class RoleExceptionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(RoleExceptionHandler.class);
@@ -33,4 +37,20 @@ public class RoleExceptionHandler {
 
         return new ResponseEntity<>(data, HttpStatus.NOT_FOUND);
     }
+
+
+    /**
+     * Обрабатывает исключение NoSuchRoleException, возникающее, когда запрошенная роль не существует.
+     *
+     * @param exception исключение типа NoSuchRoleException.
+     * @return ResponseEntity, содержащий объект UserIncorrectData и статус HTTP ответа NOT_FOUND (404).
+     */
+    @ExceptionHandler
+    public ResponseEntity<UserIncorrectData> handleException(NoSuchRoleException exception) {
+        logger.warn("Роль не найдена: {}", exception.getMessage());
+        UserIncorrectData data = new UserIncorrectData();
+        data.setInfo(exception.getMessage());
+
+        return new ResponseEntity<>(data, HttpStatus.NOT_FOUND);
+    }
 }
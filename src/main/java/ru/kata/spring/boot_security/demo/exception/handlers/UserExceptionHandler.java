@@ -2,16 +2,21 @@ package ru.kata.spring.boot_security.demo.exception.handlers;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import ru.kata.spring.boot_security.demo.exception.exception.InvalidRequestParameterException;
+import ru.kata.spring.boot_security.demo.exception.exception.MissingUserVersionException;
 import ru.kata.spring.boot_security.demo.exception.exception.NoSuchUserException;
 import ru.kata.spring.boot_security.demo.exception.exception.UserIncorrectData;
 import ru.kata.spring.boot_security.demo.exception.exception.UserSaveException;
 import ru.kata.spring.boot_security.demo.exception.exception.UserUpdateException;
+import ru.kata.spring.boot_security.demo.exception.exception.UserVersionConflictException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -22,6 +27,7 @@ import java.util.Map;
  * в них сообщениями. Возвращает в Http ответе ResponseEntity в теле которого содержатся сообщения парсированные в формат Json.
  */
 @ControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE) // проверяется раньше GlobalExceptionHandler, который обрабатывает любые Exception
 public class UserExceptionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(UserExceptionHandler.class);
@@ -98,4 +104,50 @@ public class UserExceptionHandler {
     }
 
 
+    /**
+     * Обрабатывает исключение UserVersionConflictException, возникающее, когда пользователь был изменен параллельно.
+     *
+     * @param exception исключение типа UserVersionConflictException.
+     * @return ResponseEntity, содержащий объект UserIncorrectData и статус HTTP ответа CONFLICT (409).
+     */
+    @ExceptionHandler(UserVersionConflictException.class)
+    public ResponseEntity<UserIncorrectData> handleException(UserVersionConflictException exception) {
+        logger.warn("Конфликт версий пользователя: {}", exception.getMessage());
+        UserIncorrectData data = new UserIncorrectData();
+        data.setInfo(exception.getMessage());
+
+        return new ResponseEntity<>(data, HttpStatus.CONFLICT);
+    }
+
+
+    /**
+     * Обрабатывает исключение MissingUserVersionException, возникающее, когда в запросе нет заголовка If-Match.
+     *
+     * @param exception исключение типа MissingUserVersionException.
+     * @return ResponseEntity, содержащий объект UserIncorrectData и статус HTTP ответа PRECONDITION_REQUIRED (428).
+     */
+    @ExceptionHandler(MissingUserVersionException.class)
+    public ResponseEntity<UserIncorrectData> handleException(MissingUserVersionException exception) {
+        logger.warn("Не передана версия пользователя: {}", exception.getMessage());
+        UserIncorrectData data = new UserIncorrectData();
+        data.setInfo(exception.getMessage());
+
+        return new ResponseEntity<>(data, HttpStatus.PRECONDITION_REQUIRED);
+    }
+
+
+    /**
+     * Обрабатывает исключение InvalidRequestParameterException, возникающее при недопустимом значении параметра запроса.
+     *
+     * @param exception исключение типа InvalidRequestParameterException.
+     * @return ResponseEntity, содержащий объект UserIncorrectData и статус HTTP ответа BAD_REQUEST (400).
+     */
+    @ExceptionHandler(InvalidRequestParameterException.class)
+    public ResponseEntity<UserIncorrectData> handleException(InvalidRequestParameterException exception) {
+        logger.warn("Недопустимый параметр запроса: {}", exception.getMessage());
+        UserIncorrectData data = new UserIncorrectData();
+        data.setInfo(exception.getMessage());
+
+        return new ResponseEntity<>(data, HttpStatus.BAD_REQUEST);
+    }
 }
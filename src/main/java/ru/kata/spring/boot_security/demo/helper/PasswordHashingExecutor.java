@@ -0,0 +1,208 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.exception.exception.PasswordHashingException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Выделенный пул потоков ограниченного размера для кодирования паролей (BCrypt).
+ * <p>
+ * Кодирование пароля занимает около 100 мс процессорного времени, поэтому количество одновременно кодируемых паролей
+ * ограничено размером пула, а количество ожидающих - размером очереди. Если очередь заполнена, поток, отправляющий задачу,
+ * ждет освобождения места не дольше submitTimeout (обратное давление), после чего получает PasswordHashingException.
+ * <p>
+ * Пакетное кодирование (hashAll) занимает не более batchPermits мест в пуле и очереди одновременно для всех пакетов вместе,
+ * поэтому большой пакет не вытесняет одиночные запросы (создание пользователя, смена пароля).
+ * <p>
+ * Метрики: password.hash (время кодирования), password.hash.queue.wait (время ожидания в очереди),
+ * executor.queued, executor.active и др. с тегом name=password.hashing (глубина очереди и загрузка пула).
+ */
+@Component
+public class PasswordHashingExecutor {
+    private static final String POOL_NAME = "password.hashing";
+    private static final String HASHING_REJECTED = "Сервис перегружен: пароль не может быть закодирован, повторите запрос позже";
+    private static final String HASHING_INTERRUPTED = "Кодирование пароля прервано";
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore batchPermits;
+    private final Duration submitTimeout;
+    private final Timer hashTimer;
+    private final Timer queueWaitTimer;
+
+    public PasswordHashingExecutor(@Value("${app.password-hashing.pool-size:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int poolSize,
+                                   @Value("${app.password-hashing.queue-capacity:100}") int queueCapacity,
+                                   @Value("${app.password-hashing.submit-timeout:5s}") Duration submitTimeout,
+                                   @Value("${app.password-hashing.batch-permits:0}") int batchPermits,
+                                   MeterRegistry meterRegistry) {
+        this.submitTimeout = submitTimeout;
+        // По умолчанию пакеты занимают не более половины потоков пула
+        this.batchPermits = new Semaphore(batchPermits > 0 ? batchPermits : Math.max(1, poolSize / 2));
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hash-"),
+                (task, pool) -> waitForQueueSpace(task, pool, submitTimeout));
+        this.hashTimer = Timer.builder("password.hash")
+                .description("Время кодирования пароля")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("password.hash.queue.wait")
+                .description("Время ожидания задачи кодирования пароля в очереди")
+                .register(meterRegistry);
+        new ExecutorServiceMetrics(executor, POOL_NAME, Tags.empty()).bindTo(meterRegistry);
+    }
+
+
+    /**
+     * Отправляет задачу кодирования в пул, не дожидаясь результата.
+     * <p>
+     * Используется для параллельного кодирования нескольких паролей (например, при пакетном создании пользователей).
+     *
+     * @param hashing задача кодирования пароля
+     * @return CompletableFuture<String> закодированный пароль
+     * @throws PasswordHashingException если очередь заполнена дольше submitTimeout
+     */
+    public CompletableFuture<String> submit(Supplier<String> hashing) {
+        long submittedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueWaitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashTimer.record(hashing);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingException(HASHING_REJECTED, e);
+        }
+    }
+
+
+    /**
+     * Кодирует группу паролей параллельно и дожидается всех результатов.
+     * <p>
+     * Каждая задача отправляется в пул после получения разрешения batchPermits, которое освобождается по ее завершении.
+     * Если разрешение не получено за submitTimeout или одна из задач завершилась ошибкой, следующие задачи не отправляются,
+     * уже отправленные отменяются (отмененная задача не выполняет кодирование, когда до нее доходит очередь)
+     * и исключение пробрасывается.
+     *
+     * @param hashings задачи кодирования паролей
+     * @return List<String> закодированные пароли в том же порядке
+     * @throws PasswordHashingException если пул перегружен дольше submitTimeout или ожидание прервано
+     */
+    public List<String> hashAll(List<Supplier<String>> hashings) {
+        List<CompletableFuture<String>> hashed = new ArrayList<>(hashings.size());
+        AtomicBoolean failed = new AtomicBoolean();
+        try {
+            for (Supplier<String> hashing : hashings) {
+                acquireBatchPermit();
+                if (failed.get()) {
+                    // Ошибка будет проброшена при ожидании результатов, остальные пароли не отправляются в пул
+                    batchPermits.release();
+                    break;
+                }
+                CompletableFuture<String> future;
+                try {
+                    future = submit(hashing);
+                } catch (RuntimeException e) {
+                    batchPermits.release();
+                    throw e;
+                }
+                future.whenComplete((result, failure) -> {
+                    if (failure != null) {
+                        failed.set(true);
+                    }
+                    batchPermits.release();
+                });
+                hashed.add(future);
+            }
+            return hashed.stream()
+                    .map(this::await)
+                    .toList();
+        } catch (RuntimeException e) {
+            hashed.forEach(future -> future.cancel(false));
+            throw e;
+        }
+    }
+
+
+    /**
+     * Кодирует пароль в пуле и дожидается результата.
+     *
+     * @param hashing задача кодирования пароля
+     * @return String закодированный пароль
+     * @throws PasswordHashingException если очередь заполнена дольше submitTimeout или ожидание прервано
+     */
+    public String hash(Supplier<String> hashing) {
+        return await(submit(hashing));
+    }
+
+
+    /**
+     * Дожидается результата задачи кодирования, отправленной методом submit.
+     *
+     * @param hashed результат задачи кодирования
+     * @return String закодированный пароль
+     * @throws PasswordHashingException если ожидание прервано
+     */
+    public String await(CompletableFuture<String> hashed) {
+        try {
+            return hashed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingException(HASHING_INTERRUPTED, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new PasswordHashingException(HASHING_INTERRUPTED, e.getCause());
+        }
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+
+    private void acquireBatchPermit() {
+        try {
+            if (!batchPermits.tryAcquire(submitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new PasswordHashingException(HASHING_REJECTED, new RejectedExecutionException(HASHING_REJECTED));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingException(HASHING_INTERRUPTED, e);
+        }
+    }
+
+
+    /**
+     * Обработчик переполнения очереди: ждет освобождения места в очереди не дольше submitTimeout.
+     */
+    private static void waitForQueueSpace(Runnable task, ThreadPoolExecutor pool, Duration submitTimeout) {
+        try {
+            if (pool.isShutdown() || !pool.getQueue().offer(task, submitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException(HASHING_REJECTED);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(HASHING_INTERRUPTED, e);
+        }
+    }
+}
@@ -1,28 +1,56 @@
 package ru.kata.spring.boot_security.demo.helper;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import ru.kata.spring.boot_security.demo.exception.exception.PasswordHashingException;
 import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.security.VerifiedCredentialCache;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class PasswordService {
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private static final String ENCODE_TIMER = "password.encode";
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final VerifiedCredentialCache verifiedCredentialCache;
+    private final MeterRegistry meterRegistry;
 
 
     /**
-     * Запускает цепочку методов. Обрабатывает пароль пользователя.
-     * Если пароль не изменился (будет null или пустым), возвращает текущий пароль из existingUser.
+     * Обрабатывает пароль пользователя.
+     * Если пароль не изменился (закодированный пароль равен null), возвращает текущий пароль из existingUser.
+     * Если пароль изменился, удаляет учетные данные пользователя из кеша VerifiedCredentialCache.
+     * <p>
+     * Пароль кодируется заранее, до открытия транзакции, с помощью метода encodePasswordIfChanged.
      *
-     * @param existingUser текущий пользователь
-     * @param updatedUser  обновленный пользователь
+     * @param existingUser    текущий пользователь
+     * @param encodedPassword закодированный новый пароль или null, если пароль не изменился
      * @return String обработанный пароль
      */
-    public String passwordProcessing(User existingUser, User updatedUser) {
-        return isPasswordChanged(updatedUser) ? encodePassword(updatedUser.getPassword()) : existingUser.getPassword();
+    public String passwordProcessing(User existingUser, String encodedPassword) {
+        if (encodedPassword == null) {
+            return existingUser.getPassword();
+        }
+        verifiedCredentialCache.evict(existingUser.getUserName());
+        return encodedPassword;
+    }
+
+
+    /**
+     * Кодирует новый пароль пользователя, если он был изменен.
+     *
+     * @param updatedUser обновленный пользователь
+     * @return String закодированный пароль или null, если пароль не изменился
+     */
+    public String encodePasswordIfChanged(User updatedUser) {
+        return isPasswordChanged(updatedUser) ? encodePassword(updatedUser.getPassword()) : null;
     }
 
 
@@ -42,12 +70,40 @@ public class PasswordService {
 
 
     /**
-     * Кодирует пароль.
+     * Кодирует пароль в пуле кодирования паролей.
+     * <p>
+     * Метод не должен вызываться внутри транзакции: на время кодирования (около 100 мс) удерживалось бы соединение с базой данных.
+     * Время публикуется таймером password.encode явно, а не через @Timed, потому что метод вызывается и изнутри класса
+     * (encodePasswordIfChanged), минуя прокси.
      *
      * @param password исходный пароль
      * @return String закодированный пароль
      */
     public String encodePassword(String password) {
-        return bCryptPasswordEncoder.encode(password);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return passwordHashingExecutor.hash(() -> passwordEncoder.encode(password));
+        } finally {
+            sample.stop(Timer.builder(ENCODE_TIMER)
+                    .description("Время кодирования пароля, включая ожидание в очереди пула")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+
+    /**
+     * Кодирует пароли параллельно в пуле кодирования паролей.
+     * <p>
+     * Группа занимает ограниченную долю пула (см. PasswordHashingExecutor.hashAll), при ошибке оставшиеся пароли не кодируются.
+     *
+     * @param passwords исходные пароли
+     * @return List<String> закодированные пароли в том же порядке
+     * @throws PasswordHashingException если пул кодирования паролей перегружен
+     */
+    public List<String> encodePasswords(List<String> passwords) {
+        return passwordHashingExecutor.hashAll(passwords.stream()
+                .<Supplier<String>>map(password -> () -> passwordEncoder.encode(password))
+                .toList());
     }
 }
@@ -0,0 +1,85 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Направляет соединения транзакций только для чтения на реплики, а остальные - на основную базу данных.
+ * <p>
+ * Реплика выбирается по кругу. Решение принимается при получении физического соединения, поэтому источник данных должен
+ * быть обернут в LazyConnectionDataSourceProxy: тогда соединение получается при первом запросе, когда признак readOnly
+ * транзакции уже установлен. Соединения вне транзакции (миграции, создание схемы) направляются на основную базу данных.
+ * <p>
+ * После фиксации пишущей транзакции текущий пользователь запоминается в ReadYourWritesTracker, и его чтение в пределах
+ * окна read-your-writes также выполняется с основной базы данных.
+ * <p>
+ * Метрика: datasource.routing с тегом target (primary/replica) - количество полученных соединений.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    private final List<String> replicaKeys;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Counter primaryCounter;
+    private final Counter replicaCounter;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<? extends DataSource> replicas,
+                                      ReadYourWritesTracker readYourWritesTracker, MeterRegistry meterRegistry) {
+        Map<Object, Object> targets = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = REPLICA + "-" + i;
+            targets.put(key, replicas.get(i));
+            keys.add(key);
+        }
+        this.replicaKeys = List.copyOf(keys);
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.primaryCounter = routingCounter(meterRegistry, PRIMARY);
+        this.replicaCounter = routingCounter(meterRegistry, REPLICA);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !replicaKeys.isEmpty()
+                && !readYourWritesTracker.requiresPrimary()) {
+            replicaCounter.increment();
+            return replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // Соединение получается один раз за транзакцию, поэтому синхронизация регистрируется один раз
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readYourWritesTracker.recordWrite();
+                }
+            });
+        }
+        primaryCounter.increment();
+        return PRIMARY;
+    }
+
+
+    private static Counter routingCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("datasource.routing")
+                .description("Количество соединений, полученных с основной базы данных или реплик")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+
+/**
+ * Запоминает пользователей, недавно изменявших данные, чтобы их чтение выполнялось с основной базы данных.
+ * <p>
+ * Реплика отстает от основной базы данных, поэтому сразу после изменения клиент мог бы не увидеть его в ответе на следующий
+ * GET-запрос. После фиксации пишущей транзакции имя аутентифицированного пользователя запоминается на время window,
+ * и в течение этого времени его транзакции только для чтения также направляются на основную базу данных.
+ * Запросы без аутентификации (например, загрузка пользователя при входе) не отслеживаются.
+ */
+public class ReadYourWritesTracker {
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesTracker(Duration window, long maximumSize) {
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+
+    /**
+     * Запоминает, что текущий пользователь изменил данные.
+     */
+    public void recordWrite() {
+        String userName = currentUserName();
+        if (userName != null) {
+            recentWriters.put(userName, Boolean.TRUE);
+        }
+    }
+
+
+    /**
+     * Проверяет, изменял ли текущий пользователь данные в пределах окна read-your-writes.
+     *
+     * @return boolean true, если чтение текущего пользователя должно выполняться с основной базы данных
+     */
+    public boolean requiresPrimary() {
+        String userName = currentUserName();
+        return userName != null && recentWriters.getIfPresent(userName) != null;
+    }
+
+
+    private static String currentUserName() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
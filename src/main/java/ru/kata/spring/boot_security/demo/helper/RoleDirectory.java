@@ -0,0 +1,106 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.exception.exception.RoleCreationException;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.repositories.RoleRepository;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Справочник ролей в памяти: имя роли -> ID.
+ * <p>
+ * Загружается после старта приложения и дополняется при чтении (read-through): отсутствующая роль ищется в базе данных
+ * и при необходимости создается. Роли почти не меняются, поэтому на пути записи пользователей роли определяются без SELECT.
+ * <p>
+ * Роль создается отдельной транзакцией (REQUIRES_NEW) запросом INSERT ... ON CONFLICT DO NOTHING, после чего ее ID
+ * выбирается повторно. Если ту же роль одновременно создает другой запрос или другой экземпляр приложения,
+ * вставка пропускается, и обе стороны получают ID одной и той же строки. Поэтому запрос к базе данных выполняется вне
+ * ConcurrentHashMap.computeIfAbsent и не блокирует обращения к другим ролям. Для новой роли транзакция REQUIRES_NEW
+ * требует отдельного соединения, поэтому вызывающий код определяет роли до открытия своей транзакции.
+ */
+@Component
+public class RoleDirectory {
+    private static final String ROLE_NOT_CREATED = "Роль %s не найдена после создания";
+
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final RoleRepository roleRepository;
+    private final TransactionTemplate requiresNewTransaction;
+
+    public RoleDirectory(RoleRepository roleRepository, PlatformTransactionManager transactionManager) {
+        this.roleRepository = roleRepository;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+
+    /**
+     * Загружает все роли из базы данных после старта приложения (в том числе созданные DataInitializer).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        roleRepository.findAll().forEach(role -> idsByName.put(role.getName(), role.getId()));
+    }
+
+
+    /**
+     * Возвращает ссылку на роль с заданным именем, создавая роль, если она не существует.
+     * <p>
+     * Возвращается новый отключенный от контекста персистентности экземпляр Role с ID и именем, поэтому его можно
+     * безопасно назначать пользователю в любой транзакции: Hibernate записывает в user_roles только ID роли.
+     *
+     * @param name имя роли
+     * @return Role роль с ID из базы данных
+     * @throws RoleCreationException если роль не удалось найти после создания
+     */
+    public Role getOrCreate(String name) throws RoleCreationException {
+        Integer id = idsByName.get(name);
+        if (id == null) {
+            id = findOrInsert(name);
+            idsByName.putIfAbsent(name, id);
+        }
+        return new Role(id, name, new HashSet<>());
+    }
+
+
+    /**
+     * Возвращает ссылку на существующую роль с заданным именем, не создавая ее.
+     * <p>
+     * Найденная в базе данных роль добавляется в справочник. Отсутствующая роль не запоминается,
+     * поэтому роль, созданная позже, будет найдена при следующем обращении.
+     *
+     * @param name имя роли
+     * @return Optional<Role> роль с ID из базы данных, пустой, если роль не существует
+     */
+    public Optional<Role> find(String name) {
+        Integer id = idsByName.get(name);
+        if (id == null) {
+            Optional<Role> role = roleRepository.findRoleByName(name);
+            if (role.isEmpty()) {
+                return Optional.empty();
+            }
+            id = role.get().getId();
+            idsByName.putIfAbsent(name, id);
+        }
+        return Optional.of(new Role(id, name, new HashSet<>()));
+    }
+
+
+    private Integer findOrInsert(String name) {
+        return requiresNewTransaction.execute(status -> roleRepository.findRoleByName(name)
+                .or(() -> {
+                    roleRepository.insertIfAbsent(name);
+                    return roleRepository.findRoleByName(name);
+                })
+                .map(Role::getId)
+                .orElseThrow(() -> new RoleCreationException(String.format(ROLE_NOT_CREATED, name))));
+    }
+}
@@ -0,0 +1,30 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import ru.kata.spring.boot_security.demo.exception.exception.InvalidRequestParameterException;
+
+import java.util.Arrays;
+
+/**
+ * Способы фильтрации пользователей по нескольким ролям.
+ * <p>
+ * ANY - пользователь имеет хотя бы одну из заданных ролей, ALL - пользователь имеет все заданные роли.
+ */
+public enum RoleMatch {
+    ANY,
+    ALL;
+
+
+    /**
+     * Находит способ фильтрации по его имени без учета регистра.
+     *
+     * @param value имя способа фильтрации ("any" или "all")
+     * @return RoleMatch найденный способ фильтрации
+     * @throws InvalidRequestParameterException если способ фильтрации не поддерживается
+     */
+    public static RoleMatch fromValue(String value) {
+        return Arrays.stream(values())
+                .filter(match -> match.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new InvalidRequestParameterException("Неподдерживаемый способ фильтрации по ролям: " + value));
+    }
+}
@@ -1,21 +1,27 @@
 package ru.kata.spring.boot_security.demo.helper;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import ru.kata.spring.boot_security.demo.exception.exception.NoSuchRoleException;
 import ru.kata.spring.boot_security.demo.exception.exception.RoleCreationException;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
-import ru.kata.spring.boot_security.demo.repositories.RoleRepository;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class RoleService {
-    private final RoleRepository roleRepository;
+    private final RoleDirectory roleDirectory;
     private static final String ERROR_CREATING_ROLE = "Ошибка при создании роли: %s";
+    private static final String ROLE_NOT_FOUND = "Роль %s не найдена";
 
 
     /**
@@ -27,19 +33,82 @@ public class RoleService {
      * @return Set<Role> набор проверенных ролей
      */
     public User validateRoles(User user) throws RoleCreationException  {
-        Set<Role> updatedRoles = user.getRoles().stream()
+        user.setRoles(resolveRoles(user.getRoles()));
+        return user;
+    }
+
+
+    /**
+     * Находит или создает роли с заданными именами.
+     *
+     * @param roles роли, которые необходимо проверить (используются только имена)
+     * @return Set<Role> набор проверенных ролей с ID
+     * @throws RoleCreationException если роль не может быть создана
+     */
+    public Set<Role> resolveRoles(Set<Role> roles) throws RoleCreationException {
+        return roles.stream()
                 .map(this::findOrCreateRole)
                 .collect(Collectors.toSet());
-        user.setRoles(updatedRoles);
-        return user;
+    }
+
+
+    /**
+     * Проверяет роли сразу для группы пользователей.
+     * <p>
+     * Каждое имя роли ищется (или создается) только один раз для всей группы, а не для каждого пользователя,
+     * после чего всем пользователям устанавливаются найденные роли.
+     *
+     * @param users пользователи, роли которых необходимо проверить
+     * @return List<User> те же пользователи с проверенными ролями
+     * @throws RoleCreationException если роль не может быть создана
+     */
+    public List<User> validateRoles(List<User> users) throws RoleCreationException {
+        Map<String, Role> rolesByName = new HashMap<>();
+        for (User user : users) {
+            Set<Role> updatedRoles = user.getRoles().stream()
+                    .map(role -> rolesByName.computeIfAbsent(role.getName(), name -> findOrCreateRole(role)))
+                    .collect(Collectors.toSet());
+            user.setRoles(updatedRoles);
+        }
+        return users;
+    }
+
+
+    /**
+     * Находит существующие роли с заданными именами, не создавая отсутствующие.
+     * <p>
+     * Роли определяются через справочник ролей RoleDirectory, без запроса к базе данных для уже известных ролей.
+     *
+     * @param names имена ролей
+     * @return Map<String, Role> найденные роли по имени в порядке имен, отсутствующие роли не включаются
+     */
+    public Map<String, Role> findRoles(Collection<String> names) {
+        Map<String, Role> rolesByName = new LinkedHashMap<>();
+        for (String name : names) {
+            roleDirectory.find(name).ifPresent(role -> rolesByName.put(name, role));
+        }
+        return rolesByName;
+    }
+
+
+    /**
+     * Получает существующую роль по имени, не создавая ее.
+     *
+     * @param name имя роли
+     * @return Role роль с ID из базы данных
+     * @throws NoSuchRoleException если роль не существует
+     */
+    public Role getRole(String name) throws NoSuchRoleException {
+        return roleDirectory.find(name)
+                .orElseThrow(() -> new NoSuchRoleException(String.format(ROLE_NOT_FOUND, name)));
     }
 
 
     /**
      * Получает существующую роль или создает новую, если она не существует.
      * <p>
-     * Ищет роль по имени в базе данных, с помощью метода findRoleByName из UserRepository
-     * Если роль не найдена, сохраняет новую роль, с помощью метода save
+     * Роль определяется по имени через справочник ролей RoleDirectory, без запроса к базе данных для уже известных ролей.
+     * Если роль не найдена, она создается справочником.
      *
      * @param role роль, которую необходимо найти или создать
      * @return Role найденная или созданная роль
@@ -47,9 +116,8 @@ public class RoleService {
      */
     private Role findOrCreateRole(Role role) throws RoleCreationException {
         try {
-            return roleRepository.findRoleByName(role.getName())
-                    .orElseGet(() -> roleRepository.save(role));
-        } catch (DataIntegrityViolationException e) {
+            return roleDirectory.getOrCreate(role.getName());
+        } catch (DataAccessException e) {
             throw new RoleCreationException(String.format(ERROR_CREATING_ROLE, role));
 
         }
@@ -0,0 +1,74 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.kata.spring.boot_security.demo.configs.DataSourceProxyConfig;
+
+import java.io.IOException;
+
+/**
+ * Подсчитывает SQL-запросы, выполненные при обработке одного HTTP-запроса (включая аутентификацию).
+ * <p>
+ * Количество запросов публикуется метрикой http.server.requests.db.statements с тегами method и uri (шаблон пути)
+ * и записывается в журнал: с уровнем DEBUG, а при превышении warnThreshold - с уровнем WARN и разбивкой по типам запросов.
+ * Резкий рост метрики для эндпоинта указывает на появление N+1 запросов.
+ * Учитываются только запросы, выполненные в потоке обработки HTTP-запроса.
+ */
+public class StatementCountFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(StatementCountFilter.class);
+    private static final String METRIC_NAME = "http.server.requests.db.statements";
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final MeterRegistry meterRegistry;
+    private final int warnThreshold;
+
+    public StatementCountFilter(MeterRegistry meterRegistry, int warnThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        QueryCountHolder.clear();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            record(request);
+            QueryCountHolder.clear();
+        }
+    }
+
+
+    private void record(HttpServletRequest request) {
+        QueryCount count = QueryCountHolder.get(DataSourceProxyConfig.DATA_SOURCE_NAME);
+        long statements = count == null ? 0 : count.getTotal();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? UNKNOWN_URI : pattern.toString();
+
+        DistributionSummary.builder(METRIC_NAME)
+                .description("Количество SQL-запросов на один HTTP-запрос")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(statements);
+
+        if (statements > warnThreshold) {
+            logger.warn("{} {}: {} запросов к базе данных (select = {}, insert = {}, update = {}, delete = {})",
+                    request.getMethod(), request.getRequestURI(), statements,
+                    count.getSelect(), count.getInsert(), count.getUpdate(), count.getDelete());
+        } else {
+            logger.debug("{} {}: {} запросов к базе данных", request.getMethod(), request.getRequestURI(), statements);
+        }
+    }
+}
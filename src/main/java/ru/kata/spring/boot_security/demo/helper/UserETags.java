@@ -0,0 +1,48 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import java.util.OptionalLong;
+
+/**
+ * Формирует и разбирает ETag пользователя вида "{id}-{version}".
+ */
+public final class UserETags {
+
+    private UserETags() {
+    }
+
+
+    /**
+     * Формирует ETag пользователя (без кавычек).
+     *
+     * @param id      ID пользователя
+     * @param version версия пользователя
+     * @return String ETag пользователя
+     */
+    public static String format(long id, long version) {
+        return id + "-" + version;
+    }
+
+
+    /**
+     * Извлекает версию пользователя из значения заголовка If-Match.
+     * <p>
+     * Принимается только один строгий ETag в кавычках, выданный для этого же пользователя.
+     * Слабые ETag (W/"..."), "*", списки и ETag другого пользователя не содержат пригодной версии.
+     *
+     * @param id      ID пользователя из адреса запроса
+     * @param ifMatch значение заголовка If-Match
+     * @return OptionalLong версия пользователя, пустой, если версию извлечь нельзя
+     */
+    public static OptionalLong parseVersion(long id, String ifMatch) {
+        String value = ifMatch.strip();
+        String prefix = "\"" + id + "-";
+        if (!value.startsWith(prefix) || !value.endsWith("\"") || value.length() <= prefix.length() + 1) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(value.substring(prefix.length(), value.length() - 1)));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import ru.kata.spring.boot_security.demo.exception.exception.InvalidRequestParameterException;
+
+import java.util.Arrays;
+
+/**
+ * Форматы выгрузки пользователей.
+ * <p>
+ * NDJSON - один JSON объект UserDTO (с ID пользователя) на строку, CSV - строка заголовка и по одной строке на пользователя.
+ */
+public enum UserExportFormat {
+    NDJSON("application/x-ndjson", "users.ndjson"),
+    CSV("text/csv", "users.csv");
+
+    private final String contentType;
+    private final String fileName;
+
+    UserExportFormat(String contentType, String fileName) {
+        this.contentType = contentType;
+        this.fileName = fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+
+    /**
+     * Находит формат по его имени без учета регистра.
+     *
+     * @param value имя формата (например, "ndjson" или "csv")
+     * @return UserExportFormat найденный формат
+     * @throws InvalidRequestParameterException если формат не поддерживается
+     */
+    public static UserExportFormat fromValue(String value) {
+        return Arrays.stream(values())
+                .filter(format -> format.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new InvalidRequestParameterException("Неподдерживаемый формат выгрузки: " + value));
+    }
+}
@@ -0,0 +1,126 @@
+package ru.kata.spring.boot_security.demo.helper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ru.kata.spring.boot_security.demo.dto.UserDTO;
+import ru.kata.spring.boot_security.demo.model.Role;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Записывает пользователей в выходной поток по одному в формате NDJSON или CSV.
+ * <p>
+ * Ничего не накапливает в памяти, кроме буфера записи. После первой строки буфер сбрасывается,
+ * чтобы клиент начал получать ответ сразу, не дожидаясь чтения всех пользователей из базы данных.
+ * ID пользователя не сериализуется в UserDTO (WRITE_ONLY), поэтому записывается в оба формата явно первым полем.
+ */
+public final class UserExportWriter implements Consumer<UserDTO>, Flushable {
+    private static final String CSV_HEADER = "id,userName,lastName,phoneNumber,email,roles";
+    private static final String ROLE_DELIMITER = "|";
+
+    private final UserExportFormat format;
+    private final ObjectMapper objectMapper;
+    private final Writer writer;
+    private final JsonGenerator jsonGenerator;
+    private boolean firstRowWritten;
+
+    public UserExportWriter(UserExportFormat format, ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (format == UserExportFormat.NDJSON) {
+            this.jsonGenerator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null); // строки разделяются только переводом строки
+        } else {
+            this.jsonGenerator = null;
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+    }
+
+
+    /**
+     * Записывает одного пользователя.
+     *
+     * @param userDTO пользователь в виде UserDTO
+     * @throws UncheckedIOException если запись в выходной поток не удалась (например, клиент закрыл соединение)
+     */
+    @Override
+    public void accept(UserDTO userDTO) {
+        try {
+            if (format == UserExportFormat.NDJSON) {
+                ObjectNode row = objectMapper.createObjectNode().put("id", userDTO.getId());
+                row.setAll((ObjectNode) objectMapper.valueToTree(userDTO));
+                jsonGenerator.writeTree(row);
+                jsonGenerator.writeRaw('\n');
+            } else {
+                writeCsvRow(userDTO);
+            }
+            if (!firstRowWritten) {
+                firstRowWritten = true;
+                flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Сбрасывает буферы в выходной поток.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (jsonGenerator != null) {
+            jsonGenerator.flush();
+        }
+        writer.flush();
+    }
+
+
+    private void writeCsvRow(UserDTO userDTO) throws IOException {
+        String roles = userDTO.getRoles() == null ? "" : userDTO.getRoles().stream()
+                .map(Role::getName)
+                .sorted()
+                .collect(Collectors.joining(ROLE_DELIMITER));
+
+        writer.write(userDTO.getId() == null ? "" : userDTO.getId().toString());
+        writer.write(',');
+        writer.write(escapeCsv(userDTO.getUserName()));
+        writer.write(',');
+        writer.write(escapeCsv(userDTO.getLastName()));
+        writer.write(',');
+        writer.write(escapeCsv(userDTO.getPhoneNumber()));
+        writer.write(',');
+        writer.write(escapeCsv(userDTO.getEmail()));
+        writer.write(',');
+        writer.write(escapeCsv(roles));
+        writer.write('\n');
+    }
+
+
+    /**
+     * Экранирует значение по правилам RFC 4180: значения с запятой, кавычкой или переводом строки заключаются в кавычки,
+     * кавычки внутри значения удваиваются.
+     */
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
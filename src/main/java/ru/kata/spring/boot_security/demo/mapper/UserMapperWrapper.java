@@ -1,5 +1,6 @@
 package ru.kata.spring.boot_security.demo.mapper;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +17,7 @@ import ru.kata.spring.boot_security.demo.model.User;
  */
 @Component
 @RequiredArgsConstructor
+@Timed(value = "user.mapper", description = "Время преобразования User и UserDTO", histogram = true)
 public class UserMapperWrapper {
     private static final Logger logger = LoggerFactory.getLogger(UserMapperWrapper.class);
     private final UserMapper userMapper;
@@ -1,28 +1,34 @@
 package ru.kata.spring.boot_security.demo.model;
 
-import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Pattern;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import ru.kata.spring.boot_security.demo.util.userValidation.PasswordConstraint;
 import ru.kata.spring.boot_security.demo.util.userValidation.ValidationGroups;
 
@@ -30,7 +36,8 @@ import ru.kata.spring.boot_security.demo.util.userValidation.ValidationGroups;
  * Представляет пользователя в системе
  */
 @Entity
-@Table(name = "users")
+// Индексы создаются миграцией db/migration/V1__initial_schema.sql, здесь объявлены для схемы, создаваемой Hibernate в тестах
+@Table(name = "users", indexes = @Index(name = "ux_users_user_name", columnList = "user_name", unique = true))
 @Data
 @Builder
 @AllArgsConstructor
@@ -40,9 +47,17 @@ import ru.kata.spring.boot_security.demo.util.userValidation.ValidationGroups;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    // allocationSize > 1 включает оптимизатор pooled: один запрос к последовательности на 50 новых ID, что позволяет пакетную вставку
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
+    // Увеличивается Hibernate при каждом изменении пользователя (в том числе его ролей), используется для ETag
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    private Long version;
+
     @NotBlank(groups = {ValidationGroups.Create.class, ValidationGroups.Update.class})
     @Column(name = "user_name")
     private String userName;
@@ -63,11 +78,16 @@ public class User {
     private String password;
 
     @NotEmpty(message = "Необходимо выбрать хотя бы одну роль.", groups = {ValidationGroups.Create.class, ValidationGroups.Update.class})
-    @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+    // Без каскадирования: роли создаются только через RoleDirectory, а пользователю назначаются ссылки на них по ID
+    @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "userRoles") // кешируются ID ролей пользователя, сами роли - в кеше Role
+    // Роли пользователей, загруженных без @EntityGraph, загружаются одним запросом IN на 50 пользователей, а не по запросу на каждого
+    @BatchSize(size = 50)
     @JoinTable(
             name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
-            inverseJoinColumns = @JoinColumn(name = "role_id")
+            inverseJoinColumns = @JoinColumn(name = "role_id"),
+            indexes = @Index(name = "idx_user_roles_role_id", columnList = "role_id, user_id")
     )
     private Set<Role> roles = new HashSet<>();
 
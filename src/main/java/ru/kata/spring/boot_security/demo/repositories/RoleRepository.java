@@ -1,6 +1,12 @@
 package ru.kata.spring.boot_security.demo.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.kata.spring.boot_security.demo.model.Role;
 
@@ -20,10 +26,30 @@ public interface RoleRepository extends JpaRepository<Role, Long> {
 
     /**
      * Находит роль по заданному имени.
+     * <p>
+     * Результат хранится в кеше запросов Hibernate и сбрасывается при изменении таблицы roles.
      *
      * @param name имя роли
      * @return Optional<Role> роль, если найдена
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Role> findRoleByName(String name);
 
+
+    /**
+     * Создает роль с заданным именем, если ее еще нет.
+     * <p>
+     * При одновременном создании одной и той же роли вставка, нарушающая уникальность имени, пропускается (ON CONFLICT DO NOTHING),
+     * вместо того чтобы завершиться ошибкой.
+     * Запрос объявляет, что изменяет только таблицу roles, поэтому Hibernate сбрасывает кеш запросов только для нее,
+     * а не весь кеш второго уровня.
+     *
+     * @param name имя роли
+     * @return int количество созданных строк (0, если роль уже существует)
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "roles"))
+    @Query(value = "INSERT INTO roles (name) VALUES (:name) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name);
+
 }
\ No newline at end of file
@@ -1,17 +1,30 @@
 package ru.kata.spring.boot_security.demo.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.demo.dto.UserRoleRow;
+import ru.kata.spring.boot_security.demo.dto.UserVersionRow;
 import ru.kata.spring.boot_security.demo.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     /**
      * Выбирает пользователя с заданным именем.
@@ -22,6 +35,17 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByUserName(String userName);
 
 
+    /**
+     * Подсчитывает пользователей с заданными именами.
+     * <p>
+     * Используется DataInitializer для проверки наличия начальных пользователей одним запросом.
+     *
+     * @param userNames имена пользователей
+     * @return long количество найденных пользователей
+     */
+    long countByUserNameIn(Collection<String> userNames);
+
+
     /**
      * Находит пользователя по ID вместе с его ролями.
      *
@@ -38,25 +62,185 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
 
     /**
-     * Получает всех пользователей вместе с их ролями, удаляя дубликаты.
-     *
-     * Если пользователю назначено несколько ролей, тогда при использовании только @EntityGraph, в результате запроса такие пользователи будут включены несколько раз.
-     * Добавляя аннотацию @Query с JPQL запросом "SELECT DISTINCT u FROM User u", мы говорим, что мы удаляем дубликаты из результата.
+     * Выбирает пользователя с заданным именем, вместе с его ролями.
+     * <p>
+     * Вызывается при аутентификации вне транзакции и не объявлен транзакцией только для чтения намеренно:
+     * результат заполняет кеш UserDetailsCache после удаления из него пользователя (смена пароля или ролей,
+     * перекодирование пароля), поэтому при разделении чтения и записи (app.datasource.read.enabled=true) запрос
+     * выполняется на основной базе данных, а не на отстающей реплике.
      *
-     * @return List<User> список пользователей с их ролями
+     * @param userName имя пользователя
+     * @return Optional<User> пользователь с его ролями, если найден
      */
     @EntityGraph(attributePaths = "roles")
-    @Query("SELECT DISTINCT u FROM User u")
-    @NonNull
-    List<User> findAll();
+    Optional<User> findUserWithRolesByUserName(String userName);
 
 
     /**
-     * Выбирает пользователя с заданным именем, вместе с его ролями.
+     * Заменяет хеш пароля пользователя, если в базе данных хранится ожидаемый хеш.
+     * <p>
+     * Используется для перекодирования пароля после успешной аутентификации: если пароль за это время был изменен,
+     * новое значение не перезаписывается. Версия пользователя не увеличивается, т.к. пароль не входит в его представление и ETag.
      *
-     * @param userName имя пользователя
-     * @return Optional<User> пользователь с его ролями, если найден
+     * @param id          ID пользователя
+     * @param oldPassword проверенный хеш пароля
+     * @param newPassword новый хеш того же пароля
+     * @return int количество измененных строк (0, если пароль уже изменен или пользователь удален)
      */
-    @EntityGraph(attributePaths = "roles")
-    Optional<User> findUserWithRolesByUserName(String userName);
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.id = :id AND u.password = :oldPassword")
+    int updatePasswordIfUnchanged(@Param("id") long id, @Param("oldPassword") String oldPassword, @Param("newPassword") String newPassword);
+
+
+    /**
+     * Выбирает ID пользователей, следующих за курсором, в порядке возрастания ID.
+     * <p>
+     * Первый этап курсорной пагинации: ограничение количества строк выполняется в SQL (LIMIT) по индексу первичного ключа,
+     * т.к. в запросе нет JOIN FETCH коллекции ролей и Hibernate не переходит к пагинации в памяти.
+     *
+     * @param after ID, после которого начинается страница (курсор)
+     * @param limit максимальное количество ID на странице
+     * @return List<Long> список ID пользователей страницы
+     */
+    @Query("SELECT u.id FROM User u WHERE u.id > :after ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("after") long after, Limit limit);
+
+
+    /**
+     * Выбирает ID пользователей, у которых есть хотя бы одна из заданных ролей, следующих за курсором, в порядке возрастания ID.
+     * <p>
+     * Запрос читает только таблицу user_roles по индексу idx_user_roles_role_id (role_id, user_id),
+     * без соединения с таблицей users; ограничение количества строк выполняется в SQL (LIMIT).
+     *
+     * @param roleIds ID ролей
+     * @param after   ID, после которого начинается страница (курсор)
+     * @param limit   максимальное количество ID на странице
+     * @return List<Long> список ID пользователей страницы
+     */
+    @Query(value = "SELECT DISTINCT ur.user_id FROM user_roles ur " +
+            "WHERE ur.role_id IN (:roleIds) AND ur.user_id > :after ORDER BY ur.user_id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsWithAnyRoleAfter(@Param("roleIds") Collection<Integer> roleIds, @Param("after") long after, @Param("limit") int limit);
+
+
+    /**
+     * Выбирает ID пользователей, у которых есть все заданные роли, следующих за курсором, в порядке возрастания ID.
+     * <p>
+     * Строки user_roles с заданными ролями группируются по пользователю: пользователь подходит, если количество его строк
+     * равно количеству ролей (пара user_id, role_id уникальна). Как и findIdsWithAnyRoleAfter(), читает только user_roles по индексу.
+     *
+     * @param roleIds   ID ролей (без повторов)
+     * @param roleCount количество ролей в roleIds
+     * @param after     ID, после которого начинается страница (курсор)
+     * @param limit     максимальное количество ID на странице
+     * @return List<Long> список ID пользователей страницы
+     */
+    @Query(value = "SELECT ur.user_id FROM user_roles ur " +
+            "WHERE ur.role_id IN (:roleIds) AND ur.user_id > :after " +
+            "GROUP BY ur.user_id HAVING COUNT(*) = :roleCount ORDER BY ur.user_id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsWithAllRolesAfter(@Param("roleIds") Collection<Integer> roleIds, @Param("roleCount") long roleCount,
+                                        @Param("after") long after, @Param("limit") int limit);
+
+
+    /**
+     * Подсчитывает пользователей с заданной ролью.
+     * <p>
+     * Подсчет выполняется по индексу idx_user_roles_role_id без чтения таблицы users.
+     *
+     * @param roleId ID роли
+     * @return long количество пользователей с ролью
+     */
+    @Query(value = "SELECT COUNT(*) FROM user_roles WHERE role_id = :roleId", nativeQuery = true)
+    long countByRoleId(@Param("roleId") int roleId);
+
+
+    /**
+     * Выбирает ID и версии пользователей, следующих за курсором, в порядке возрастания ID.
+     * <p>
+     * Используется для вычисления ETag страницы списка пользователей: запрос читает только ID и версию,
+     * без ролей и остальных данных пользователей.
+     *
+     * @param after ID, после которого начинается страница (курсор)
+     * @param limit максимальное количество строк
+     * @return List<UserVersionRow> ID и версии пользователей страницы
+     */
+    @Query("SELECT new ru.kata.spring.boot_security.demo.dto.UserVersionRow(u.id, u.version) FROM User u WHERE u.id > :after ORDER BY u.id")
+    List<UserVersionRow> findVersionsAfter(@Param("after") long after, Limit limit);
+
+
+    /**
+     * Выбирает версию пользователя с заданным ID.
+     * <p>
+     * Используется для вычисления ETag пользователя без загрузки его данных и ролей.
+     *
+     * @param id ID пользователя
+     * @return Optional<Long> версия пользователя, если пользователь найден
+     */
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+
+    /**
+     * Выбирает данные пользователей с заданными ID и их роли в виде строк UserRoleRow.
+     * <p>
+     * Второй этап курсорной пагинации: роли выбираются одним запросом только для пользователей текущей страницы.
+     * Результат проецируется сразу в UserRoleRow, сущности User и Role не создаются и не попадают в контекст персистентности.
+     *
+     * @param ids ID пользователей
+     * @return List<UserRoleRow> строки пользователей и их ролей, отсортированные по ID пользователя
+     */
+    @Query("SELECT new ru.kata.spring.boot_security.demo.dto.UserRoleRow(u.id, u.userName, u.lastName, u.phoneNumber, u.email, r.id, r.name) " +
+            "FROM User u LEFT JOIN u.roles r WHERE u.id IN :ids ORDER BY u.id")
+    List<UserRoleRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+
+    /**
+     * Выбирает данные пользователя с заданным ID и его роли в виде строк UserRoleRow.
+     *
+     * @param id ID пользователя
+     * @return List<UserRoleRow> строки пользователя и его ролей, пустой список, если пользователь не найден
+     */
+    @Query("SELECT new ru.kata.spring.boot_security.demo.dto.UserRoleRow(u.id, u.userName, u.lastName, u.phoneNumber, u.email, r.id, r.name) " +
+            "FROM User u LEFT JOIN u.roles r WHERE u.id = :id")
+    List<UserRoleRow> findRowsById(@Param("id") long id);
+
+
+    /**
+     * Выбирает ID пользователей, у которых имя, фамилия или email начинаются с заданного префикса (без учета регистра).
+     * <p>
+     * Каждое из условий lower(...) LIKE 'префикс%' использует свой функциональный индекс (см. db/migration/V1__initial_schema.sql),
+     * поэтому время поиска не зависит от размера таблицы. Результаты ранжируются: точное совпадение имени,
+     * совпадение по началу имени, фамилии, email; при равном ранге - по ID.
+     * Возвращается Slice, без отдельного запроса на подсчет общего количества.
+     *
+     * @param query    строка поиска в нижнем регистре
+     * @param prefix   шаблон LIKE (строка поиска, в которой символы !, % и _ экранированы символом !, и с % в конце)
+     * @param pageable номер и размер страницы (без сортировки)
+     * @return Slice<Long> страница ID найденных пользователей
+     */
+    @Query("SELECT u.id FROM User u " +
+            "WHERE lower(u.userName) LIKE :prefix ESCAPE '!' OR lower(u.lastName) LIKE :prefix ESCAPE '!' OR lower(u.email) LIKE :prefix ESCAPE '!' " +
+            "ORDER BY CASE WHEN lower(u.userName) = :query THEN 0 " +
+            "WHEN lower(u.userName) LIKE :prefix ESCAPE '!' THEN 1 " +
+            "WHEN lower(u.lastName) LIKE :prefix ESCAPE '!' THEN 2 " +
+            "ELSE 3 END, u.id")
+    Slice<Long> searchIds(@Param("query") String query, @Param("prefix") String prefix, Pageable pageable);
+
+
+    /**
+     * Выбирает всех пользователей вместе с их ролями в виде потока, читаемого однонаправленным курсором.
+     * <p>
+     * Строки читаются из базы данных порциями по 500 строк (fetch size), а не загружаются в память целиком.
+     * Сортировка по ID обязательна: Hibernate собирает роли пользователя из идущих подряд строк результата.
+     * Поток должен использоваться внутри транзакции и быть закрыт после чтения.
+     *
+     * @return Stream<User> поток пользователей с их ролями, отсортированный по ID
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles ORDER BY u.id")
+    Stream<User> streamAllWithRoles();
 }
\ No newline at end of file
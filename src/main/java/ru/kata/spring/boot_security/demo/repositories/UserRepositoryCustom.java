@@ -0,0 +1,27 @@
+package ru.kata.spring.boot_security.demo.repositories;
+
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Дополнительные методы UserRepository, которые не выражаются через производные запросы и @Query.
+ * <p>
+ * Реализация находится в классе UserRepositoryCustomImpl и подключается Spring Data автоматически.
+ */
+public interface UserRepositoryCustom {
+
+    List<User> saveAllInBatches(List<User> users);
+
+    int updateIfVersionMatches(long id, long version, Map<String, Object> values);
+
+    void replaceRoles(long userId, Collection<Integer> roleIds);
+
+    int deleteUsersWithRoles(Collection<Long> ids);
+
+    Set<String> findExistingUserNames(Collection<String> userNames);
+
+}
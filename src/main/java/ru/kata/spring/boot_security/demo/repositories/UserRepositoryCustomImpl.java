@@ -0,0 +1,164 @@
+package ru.kata.spring.boot_security.demo.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Реализация дополнительных методов UserRepository.
+ */
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+    private static final int DELETE_CHUNK_SIZE = 1000;
+    private static final int USER_NAME_CHUNK_SIZE = 1000;
+    private final EntityManager entityManager;
+    private final int batchSize;
+
+    public UserRepositoryCustomImpl(EntityManager entityManager,
+                                    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * Сохраняет новых пользователей пакетами.
+     * <p>
+     * Пользователи сохраняются методом persist, после каждых batchSize пользователей контекст персистентности
+     * сбрасывается в базу данных (flush): Hibernate отправляет INSERT в users и user_roles пакетами JDBC (hibernate.jdbc.batch_size).
+     * Сохраненные пользователи отключаются от контекста (detach), чтобы он не рос вместе с количеством пользователей.
+     * <p>
+     * Роли пользователей должны существовать в базе данных и содержать ID (см. RoleService.validateRoles).
+     *
+     * @param users новые пользователи с закодированными паролями
+     * @return List<User> сохраненные пользователи с присвоенными ID
+     */
+    @Override
+    @Transactional
+    public List<User> saveAllInBatches(List<User> users) {
+        for (int from = 0; from < users.size(); from += batchSize) {
+            List<User> batch = users.subList(from, Math.min(from + batchSize, users.size()));
+            batch.forEach(entityManager::persist);
+            entityManager.flush();
+            batch.forEach(entityManager::detach);
+        }
+        return users;
+    }
+
+
+    /**
+     * Обновляет только заданные поля пользователя одним запросом UPDATE ... WHERE id = ? AND version = ?.
+     * <p>
+     * Версия пользователя увеличивается на 1 в том же запросе. Пользователь не загружается в контекст персистентности.
+     * Если версия в базе данных отличается (пользователь изменен параллельно) или пользователь не найден,
+     * ни одна строка не обновляется.
+     *
+     * @param id      ID пользователя
+     * @param version ожидаемая текущая версия пользователя
+     * @param values  новые значения полей: имя атрибута User -> значение
+     * @return int количество обновленных строк (0 или 1)
+     */
+    @Override
+    @Transactional
+    public int updateIfVersionMatches(long id, long version, Map<String, Object> values) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<User> update = criteriaBuilder.createCriteriaUpdate(User.class);
+        Root<User> user = update.from(User.class);
+        values.forEach(update::set);
+        update.set(user.<Long>get("version"), criteriaBuilder.sum(user.get("version"), 1L));
+        update.where(criteriaBuilder.equal(user.get("id"), id), criteriaBuilder.equal(user.get("version"), version));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+
+    /**
+     * Заменяет роли пользователя, изменяя в user_roles только разницу между текущим и новым набором ролей.
+     * <p>
+     * Первый запрос удаляет связи с ролями, которых нет в новом наборе, второй добавляет недостающие связи.
+     * Запросы объявляют таблицу user_roles, поэтому Hibernate сбрасывает кеш коллекции ролей пользователей.
+     *
+     * @param userId  ID пользователя
+     * @param roleIds ID новых ролей пользователя (не пустой набор)
+     */
+    @Override
+    @Transactional
+    public void replaceRoles(long userId, Collection<Integer> roleIds) {
+        entityManager.createNativeQuery("DELETE FROM user_roles WHERE user_id = :userId AND role_id NOT IN (:roleIds)")
+                .setParameter("userId", userId)
+                .setParameter("roleIds", roleIds)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("user_roles")
+                .executeUpdate();
+        entityManager.createNativeQuery("INSERT INTO user_roles (user_id, role_id) " +
+                        "SELECT :userId, r.id FROM roles r WHERE r.id IN (:roleIds) " +
+                        "AND NOT EXISTS (SELECT 1 FROM user_roles ur WHERE ur.user_id = :userId AND ur.role_id = r.id)")
+                .setParameter("userId", userId)
+                .setParameter("roleIds", roleIds)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("user_roles")
+                .executeUpdate();
+    }
+
+
+    /**
+     * Удаляет пользователей с заданными ID вместе с их связями с ролями.
+     * <p>
+     * Для каждой порции из DELETE_CHUNK_SIZE ID выполняется JPQL-запрос DELETE FROM User u WHERE u.id IN :ids.
+     * Hibernate выполняет его двумя запросами: сначала удаляет строки таблицы связей user_roles, затем строки users,
+     * и сбрасывает кеш коллекции ролей. Пользователи не загружаются в контекст персистентности.
+     * Все порции удаляются в одной транзакции.
+     *
+     * @param ids ID пользователей
+     * @return int количество удаленных пользователей (несуществующие ID пропускаются)
+     */
+    @Override
+    @Transactional
+    public int deleteUsersWithRoles(Collection<Long> ids) {
+        List<Long> idList = new ArrayList<>(ids);
+        int deleted = 0;
+        for (int from = 0; from < idList.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = idList.subList(from, Math.min(from + DELETE_CHUNK_SIZE, idList.size()));
+            deleted += entityManager.createQuery("DELETE FROM User u WHERE u.id IN :ids")
+                    .setParameter("ids", chunk)
+                    .executeUpdate();
+        }
+        return deleted;
+    }
+
+
+    /**
+     * Выбирает из заданных имен те, которые уже заняты пользователями в базе данных.
+     * <p>
+     * Для каждой порции из USER_NAME_CHUNK_SIZE имен выполняется один запрос SELECT ... WHERE user_name IN (...)
+     * по уникальному индексу ux_users_user_name. Используется при пакетном создании пользователей, чтобы отклонить
+     * строки с занятыми именами до вставки, а не нарушить уникальный индекс при сохранении всего пакета.
+     * Метод не объявлен транзакцией только для чтения, чтобы при разделении чтения и записи проверка выполнялась
+     * на основной базе данных, а не на отстающей реплике.
+     *
+     * @param userNames имена пользователей
+     * @return Set<String> имена, которые уже существуют в базе данных
+     */
+    @Override
+    public Set<String> findExistingUserNames(Collection<String> userNames) {
+        List<String> nameList = new ArrayList<>(userNames);
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < nameList.size(); from += USER_NAME_CHUNK_SIZE) {
+            List<String> chunk = nameList.subList(from, Math.min(from + USER_NAME_CHUNK_SIZE, nameList.size()));
+            existing.addAll(entityManager.createQuery("SELECT u.userName FROM User u WHERE u.userName IN :userNames", String.class)
+                    .setParameter("userNames", chunk)
+                    .getResultList());
+        }
+        return existing;
+    }
+}
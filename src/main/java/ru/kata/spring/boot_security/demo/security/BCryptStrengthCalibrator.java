@@ -0,0 +1,106 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Подбирает стоимость BCrypt (strength) под оборудование при запуске приложения.
+ * <p>
+ * Время кодирования BCrypt удваивается с каждым увеличением стоимости на 1, поэтому достаточно измерить время при небольшой
+ * стоимости MEASURED_STRENGTH и выбрать наибольшую стоимость из диапазона [min-strength, max-strength], при которой оценка
+ * времени кодирования не превышает target-time. Если даже min-strength медленнее target-time, используется min-strength:
+ * ниже нее стоимость не опускается. Если задано app.security.password.bcrypt.strength, калибровка не выполняется.
+ * <p>
+ * Выбранная стоимость публикуется метрикой password.bcrypt.strength.
+ */
+@Component
+public class BCryptStrengthCalibrator {
+    private static final Logger logger = LoggerFactory.getLogger(BCryptStrengthCalibrator.class);
+    private static final int MEASURED_STRENGTH = 8;
+    private static final int SAMPLES = 3;
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+    private static final int BCRYPT_MIN_STRENGTH = 4;
+    private static final int BCRYPT_MAX_STRENGTH = 31;
+
+    private final int fixedStrength;
+    private final int minStrength;
+    private final int maxStrength;
+    private final Duration targetTime;
+    private final MeterRegistry meterRegistry;
+
+    public BCryptStrengthCalibrator(@Value("${app.security.password.bcrypt.strength:0}") int fixedStrength,
+                                    @Value("${app.security.password.bcrypt.min-strength:10}") int minStrength,
+                                    @Value("${app.security.password.bcrypt.max-strength:16}") int maxStrength,
+                                    @Value("${app.security.password.bcrypt.target-time:100ms}") Duration targetTime,
+                                    MeterRegistry meterRegistry) {
+        if (fixedStrength != 0 && (fixedStrength < BCRYPT_MIN_STRENGTH || fixedStrength > BCRYPT_MAX_STRENGTH)) {
+            throw new IllegalArgumentException("Стоимость BCrypt должна быть от 4 до 31: " + fixedStrength);
+        }
+        if (minStrength < BCRYPT_MIN_STRENGTH || maxStrength > BCRYPT_MAX_STRENGTH || minStrength > maxStrength) {
+            throw new IllegalArgumentException("Некорректный диапазон стоимости BCrypt: " + minStrength + ".." + maxStrength);
+        }
+        this.fixedStrength = fixedStrength;
+        this.minStrength = minStrength;
+        this.maxStrength = maxStrength;
+        this.targetTime = targetTime;
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    /**
+     * Возвращает стоимость BCrypt: заданную свойством app.security.password.bcrypt.strength или подобранную калибровкой.
+     *
+     * @return int стоимость BCrypt
+     */
+    public int strength() {
+        int strength = fixedStrength != 0 ? fixedStrength : calibrate();
+        Gauge.builder("password.bcrypt.strength", () -> strength)
+                .description("Стоимость BCrypt, с которой кодируются новые пароли")
+                .register(meterRegistry);
+        return strength;
+    }
+
+
+    private int calibrate() {
+        long measuredNanos = measure();
+        int strength = Math.max(minStrength, MEASURED_STRENGTH);
+        long estimatedNanos = measuredNanos << (strength - MEASURED_STRENGTH);
+        while (strength < maxStrength && estimatedNanos * 2 <= targetTime.toNanos()) {
+            strength++;
+            estimatedNanos *= 2;
+        }
+        // min-strength ниже MEASURED_STRENGTH: стоимость уменьшается, пока оценка превышает целевое время
+        while (strength > minStrength && estimatedNanos > targetTime.toNanos()) {
+            strength--;
+            estimatedNanos /= 2;
+        }
+
+        logger.info("Стоимость BCrypt: {} (оценка времени кодирования {} мс, цель {} мс, измерено {} мс при стоимости {})",
+                strength, Duration.ofNanos(estimatedNanos).toMillis(), targetTime.toMillis(),
+                Duration.ofNanos(measuredNanos).toMillis(), MEASURED_STRENGTH);
+        return strength;
+    }
+
+
+    /**
+     * Измеряет время кодирования пароля при стоимости MEASURED_STRENGTH: лучшее из SAMPLES измерений после прогрева.
+     */
+    private static long measure() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(MEASURED_STRENGTH);
+        encoder.encode(SAMPLE_PASSWORD);
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        return bestNanos;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import ru.kata.spring.boot_security.demo.exception.exception.PasswordHashingException;
+import ru.kata.spring.boot_security.demo.helper.PasswordService;
+
+/**
+ * DaoAuthenticationProvider, пропускающий проверку BCrypt для недавно успешно проверенных учетных данных.
+ * <p>
+ * Если учетные данные есть в VerifiedCredentialCache, пароль считается проверенным.
+ * Иначе выполняется обычная проверка пароля, и при успехе учетные данные запоминаются в кеше.
+ * <p>
+ * Перекодирование пароля устаревшим алгоритмом или с меньшей стоимостью после успешной аутентификации выполняется
+ * в пуле кодирования паролей (PasswordService.encodePassword), а не в потоке запроса, как в DaoAuthenticationProvider.
+ * Если пул перегружен, аутентификация завершается успешно без перекодирования, и оно повторяется при следующей аутентификации.
+ * <p>
+ * Время проверки пароля BCrypt публикуется таймером password.match с тегом result (success/failure).
+ */
+public class CachingDaoAuthenticationProvider extends DaoAuthenticationProvider {
+    private static final String MATCH_TIMER = "password.match";
+    private final VerifiedCredentialCache verifiedCredentialCache;
+    private final MeterRegistry meterRegistry;
+    private final PasswordService passwordService;
+    private UserDetailsPasswordService userDetailsPasswordService;
+
+    public CachingDaoAuthenticationProvider(VerifiedCredentialCache verifiedCredentialCache, MeterRegistry meterRegistry,
+                                            PasswordService passwordService) {
+        this.verifiedCredentialCache = verifiedCredentialCache;
+        this.meterRegistry = meterRegistry;
+        this.passwordService = passwordService;
+    }
+
+
+    /**
+     * Сохраняет сервис для перекодирования паролей в этом классе, а не в DaoAuthenticationProvider,
+     * чтобы DaoAuthenticationProvider не кодировал пароль в потоке запроса.
+     *
+     * @param userDetailsPasswordService сохранение перекодированных паролей
+     */
+    @Override
+    public void setUserDetailsPasswordService(UserDetailsPasswordService userDetailsPasswordService) {
+        this.userDetailsPasswordService = userDetailsPasswordService;
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication, UserDetails user) {
+        if (userDetailsPasswordService != null && authentication.getCredentials() != null
+                && getPasswordEncoder().upgradeEncoding(user.getPassword())) {
+            user = upgradePassword(user, authentication.getCredentials().toString());
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
+        if (authentication.getCredentials() != null) {
+            String presentedPassword = authentication.getCredentials().toString();
+            if (verifiedCredentialCache.isVerified(userDetails.getUsername(), presentedPassword, userDetails.getPassword())) {
+                return;
+            }
+            matchPassword(userDetails, authentication);
+            verifiedCredentialCache.remember(userDetails.getUsername(), presentedPassword, userDetails.getPassword());
+            return;
+        }
+        matchPassword(userDetails, authentication);
+    }
+
+
+    private UserDetails upgradePassword(UserDetails user, String presentedPassword) {
+        try {
+            return userDetailsPasswordService.updatePassword(user, passwordService.encodePassword(presentedPassword));
+        } catch (PasswordHashingException e) {
+            logger.debug("Пароль пользователя " + user.getUsername() + " не перекодирован: " + e.getMessage());
+            return user;
+        }
+    }
+
+
+    private void matchPassword(UserDetails userDetails, UsernamePasswordAuthenticationToken authentication) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "failure";
+        try {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            result = "success";
+        } finally {
+            sample.stop(Timer.builder(MATCH_TIMER)
+                    .description("Время проверки пароля BCrypt")
+                    .tag("result", result)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Выдает и проверяет подписанные токены доступа для режима аутентификации без сессий.
+ * <p>
+ * Токен имеет вид base64url(claims).base64url(HMAC-SHA256(claims)), где claims - JSON с ID пользователя,
+ * его именем, именами ролей и временем истечения. Проверка токена не обращается к базе данных и не использует сессию,
+ * поэтому запрос может обработать любой экземпляр приложения с тем же секретным ключом.
+ * <p>
+ * Токен действует до истечения срока (app.security.token.ttl), смена пароля или удаление пользователя его не отзывают,
+ * поэтому срок действия должен быть коротким.
+ */
+@Component
+@ConditionalOnProperty(name = "app.security.stateless.enabled", havingValue = "true")
+public class TokenService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_LENGTH = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final ObjectMapper objectMapper;
+
+    public TokenService(@Value("${app.security.token.secret:}") String secret,
+                        @Value("${app.security.token.ttl:15m}") Duration ttl,
+                        ObjectMapper objectMapper) {
+        byte[] keyBytes = secret.isBlank() ? new byte[0] : Base64.getDecoder().decode(secret);
+        if (keyBytes.length < MIN_KEY_LENGTH) {
+            throw new IllegalStateException("app.security.token.secret должен содержать не менее " + MIN_KEY_LENGTH
+                    + " байт в кодировке Base64");
+        }
+        this.key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        this.ttl = ttl;
+        this.objectMapper = objectMapper;
+    }
+
+
+    /**
+     * Выдает токен доступа для аутентифицированного пользователя.
+     *
+     * @param userDetails аутентифицированный пользователь
+     * @return String подписанный токен доступа
+     */
+    public String issue(CustomUserDetails userDetails) {
+        List<String> roles = userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .sorted()
+                .toList();
+        TokenClaims claims = new TokenClaims(userDetails.getUser().getId(), userDetails.getUsername(), roles,
+                Instant.now().plus(ttl).getEpochSecond());
+        try {
+            String payload = ENCODER.encodeToString(objectMapper.writeValueAsBytes(claims));
+            return payload + '.' + ENCODER.encodeToString(sign(payload));
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось сформировать токен", e);
+        }
+    }
+
+
+    /**
+     * Проверяет подпись и срок действия токена и восстанавливает из него пользователя.
+     * <p>
+     * Пользователь содержит только ID, имя и роли: остальные данные в токен не входят.
+     *
+     * @param token токен доступа
+     * @return Optional<CustomUserDetails> пользователь, если токен действителен
+     */
+    public Optional<CustomUserDetails> verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator <= 0 || separator != token.lastIndexOf('.')) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, separator);
+        try {
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                return Optional.empty();
+            }
+            TokenClaims claims = objectMapper.readValue(DECODER.decode(payload), TokenClaims.class);
+            if (claims.exp() <= Instant.now().getEpochSecond()) {
+                return Optional.empty();
+            }
+            return Optional.of(toUserDetails(claims));
+        } catch (IllegalArgumentException | IOException e) {
+            logger.debug("Некорректный токен доступа", e);
+            return Optional.empty();
+        }
+    }
+
+
+    /**
+     * Возвращает срок действия выдаваемых токенов.
+     *
+     * @return Duration срок действия токена
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+
+    private CustomUserDetails toUserDetails(TokenClaims claims) {
+        Set<Role> roles = claims.roles().stream()
+                .map(Role::new)
+                .collect(Collectors.toSet());
+        User user = User.builder()
+                .id(claims.sub())
+                .userName(claims.name())
+                .roles(roles)
+                .build();
+        Set<CustomRoleDetails> authorities = roles.stream()
+                .map(CustomRoleDetails::new)
+                .collect(Collectors.toSet());
+        return new CustomUserDetails(user, authorities);
+    }
+
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм " + HMAC_ALGORITHM + " недоступен", e);
+        }
+    }
+
+
+    /**
+     * Содержимое токена: ID пользователя, имя, имена ролей и время истечения (секунды от начала эпохи).
+     */
+    private record TokenClaims(Long sub, String name, List<String> roles, long exp) {
+    }
+}
@@ -0,0 +1,145 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Кеш загруженных CustomUserDetails по имени пользователя.
+ * <p>
+ * Ограничен по количеству записей и по времени жизни записи (TTL), поэтому повторная аутентификация клиента,
+ * передающего учетные данные в каждом запросе, не выполняет запрос к базе данных.
+ * Записи удаляются при изменении и удалении пользователя (см. UserServiceImpl).
+ * <p>
+ * Метрики: cache.gets (result=hit/miss), cache.evictions, cache.size с тегом cache=userDetails.
+ */
+@Component
+public class UserDetailsCache {
+    private static final String CACHE_NAME = "userDetails";
+
+    private final Cache<String, CustomUserDetails> cache;
+    // ID пользователя -> ключ записи в кеше, для удаления по ID через cache.invalidate()
+    private final Map<Long, String> userNamesById = new ConcurrentHashMap<>();
+    // увеличивается при каждом удалении по ID; загрузка, во время которой он изменился, не остается в кеше
+    private final AtomicLong idEvictions = new AtomicLong();
+
+    public UserDetailsCache(@Value("${app.security.user-details-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${app.security.user-details-cache.ttl:5m}") Duration ttl,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .evictionListener((String userName, CustomUserDetails userDetails, RemovalCause cause) ->
+                        userNamesById.remove(userDetails.getUser().getId(), userName))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+
+    /**
+     * Возвращает пользователя из кеша или загружает его с помощью loader и помещает в кеш.
+     * <p>
+     * Исключение, выброшенное loader (например, UsernameNotFoundException), пробрасывается, и ничего не кешируется.
+     * Если во время загрузки пользователи удалялись из кеша по ID, загруженная запись удаляется сразу после возврата:
+     * она могла быть прочитана до фиксации изменившей пользователя транзакции.
+     *
+     * @param userName имя пользователя
+     * @param loader   загрузка пользователя из базы данных
+     * @return CustomUserDetails пользователь
+     */
+    public CustomUserDetails get(String userName, Function<String, CustomUserDetails> loader) {
+        long[] loadStartedAt = {-1};
+        CustomUserDetails userDetails = cache.get(userName, key -> {
+            loadStartedAt[0] = idEvictions.get();
+            CustomUserDetails loaded = loader.apply(key);
+            userNamesById.put(loaded.getUser().getId(), key);
+            return loaded;
+        });
+        if (loadStartedAt[0] >= 0 && loadStartedAt[0] != idEvictions.get()) {
+            cache.invalidate(userName);
+        }
+        return userDetails;
+    }
+
+
+    /**
+     * Удаляет пользователей из кеша.
+     * <p>
+     * Если вызов выполняется внутри транзакции, удаление выполняется после ее фиксации,
+     * чтобы параллельный запрос не поместил в кеш еще не измененные данные.
+     *
+     * @param userNames имена пользователей
+     */
+    public void evict(String... userNames) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(userNames);
+                }
+            });
+        } else {
+            invalidate(userNames);
+        }
+    }
+
+
+    /**
+     * Удаляет пользователей из кеша по их ID.
+     * <p>
+     * Используется, когда имена пользователей неизвестны (например, при частичном обновлении или удалении без чтения пользователей).
+     * Имя пользователя определяется по индексу ID -> имя, который заполняется при загрузке записи, и запись удаляется
+     * cache.invalidate(), поэтому удаление дожидается завершения загрузки этого пользователя в другом потоке.
+     * Как и evict(), внутри транзакции выполняется после ее фиксации.
+     *
+     * @param userIds ID пользователей
+     */
+    public void evictUsers(Collection<Long> userIds) {
+        Set<Long> ids = Set.copyOf(userIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateUsers(ids);
+                }
+            });
+        } else {
+            invalidateUsers(ids);
+        }
+    }
+
+
+    private void invalidateUsers(Set<Long> userIds) {
+        idEvictions.incrementAndGet();
+        for (Long userId : userIds) {
+            String userName = userNamesById.remove(userId);
+            if (userName != null) {
+                cache.invalidate(userName);
+            }
+        }
+    }
+
+
+    private void invalidate(String... userNames) {
+        for (String userName : userNames) {
+            if (userName != null) {
+                cache.invalidate(userName);
+            }
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package ru.kata.spring.boot_security.demo.security;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import ru.kata.spring.boot_security.demo.model.User;
 import ru.kata.spring.boot_security.demo.repositories.UserRepository;
 
@@ -14,16 +17,73 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- * Используется Spring Security для загрузки пользовательских данных при аутентификации.
+ * Используется Spring Security для загрузки пользовательских данных при аутентификации
+ * и для сохранения паролей, перекодированных после успешной аутентификации.
  */
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
+    private static final Logger logger = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
 
-    @Transactional
+
+    /**
+     * Загружает пользователя по имени из кеша UserDetailsCache, при промахе - из базы данных.
+     * <p>
+     * Метод не транзакционный: при попадании в кеш соединение с базой данных не требуется,
+     * а при промахе пользователь вместе с ролями загружается одним запросом findUserWithRolesByUserName.
+     *
+     * @param userName имя пользователя
+     * @return UserDetails пользователь с его ролями
+     * @throws UsernameNotFoundException если пользователь с таким именем не найден
+     */
     @Override
+    @Timed(value = "security.user.details.load", description = "Время получения UserDetails (из кеша или базы данных)", histogram = true)
     public UserDetails loadUserByUsername(String userName) throws UsernameNotFoundException {
+        return userDetailsCache.get(userName, this::loadFromDatabase);
+    }
+
+
+    /**
+     * Сохраняет хеш пароля, перекодированного после успешной аутентификации.
+     * <p>
+     * CachingDaoAuthenticationProvider вызывает метод, если хеш пароля создан не тем алгоритмом или с меньшей стоимостью,
+     * чем текущий PasswordEncoder; новый хеш создается в пуле кодирования паролей. Хеш заменяется одним запросом UPDATE, только если в базе данных хранится проверенный хеш,
+     * поэтому одновременная смена пароля не перезаписывается. Пользователь удаляется из кеша UserDetailsCache,
+     * чтобы следующая аутентификация получила новый хеш, а не перекодировала пароль повторно.
+     *
+     * @param userDetails аутентифицированный пользователь
+     * @param newPassword новый хеш пароля
+     * @return UserDetails пользователь с новым хешем пароля (или исходный, если хеш не заменен)
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        CustomUserDetails customUserDetails = (CustomUserDetails) userDetails;
+        User user = customUserDetails.getUser();
+        int updated = userRepository.updatePasswordIfUnchanged(user.getId(), user.getPassword(), newPassword);
+        userDetailsCache.evict(user.getUserName());
+        if (updated == 0) {
+            logger.debug("Хеш пароля пользователя {} не заменен: пароль изменен или пользователь удален", user.getUserName());
+            return userDetails;
+        }
+
+        logger.info("Пароль пользователя {} перекодирован с текущими параметрами кодирования", user.getUserName());
+        User rehashedUser = User.builder()
+                .id(user.getId())
+                .version(user.getVersion())
+                .userName(user.getUserName())
+                .lastName(user.getLastName())
+                .phoneNumber(user.getPhoneNumber())
+                .email(user.getEmail())
+                .password(newPassword)
+                .roles(user.getRoles())
+                .build();
+        return new CustomUserDetails(rehashedUser, customUserDetails.authorities());
+    }
+
+
+    private CustomUserDetails loadFromDatabase(String userName) {
         Optional<User> userOptional = userRepository.findUserWithRolesByUserName(userName);
 
         if (userOptional.isEmpty()) {
@@ -37,4 +97,4 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         return new CustomUserDetails(user, authorities);
     }
-}
\ No newline at end of file
+}
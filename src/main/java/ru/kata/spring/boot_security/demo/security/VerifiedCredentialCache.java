@@ -0,0 +1,124 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+
+/**
+ * Кеш недавно успешно проверенных учетных данных.
+ * <p>
+ * Клиенты HTTP Basic передают пароль в каждом запросе, и проверка BCrypt (около 100 мс процессорного времени) выполнялась бы каждый раз.
+ * После успешной проверки кеш запоминает HMAC-SHA256 от (имя пользователя, предъявленный пароль, хеш пароля в базе данных),
+ * и повторный запрос с теми же учетными данными проверяется сравнением HMAC без BCrypt.
+ * <p>
+ * Ключ HMAC генерируется случайно при запуске и хранится только в памяти, поэтому записи кеша бесполезны вне процесса.
+ * Хеш пароля из базы данных входит в HMAC, поэтому после смены пароля старая запись не может совпасть,
+ * кроме того, записи явно удаляются при смене пароля и удалении пользователя.
+ * <p>
+ * Метрики: cache.gets (result=hit/miss), cache.evictions, cache.size с тегом cache=verifiedCredentials.
+ */
+@Component
+public class VerifiedCredentialCache {
+    private static final String CACHE_NAME = "verifiedCredentials";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+    private static final char SEPARATOR = '\0';
+
+    private final Cache<String, byte[]> cache;
+    private final SecretKeySpec key;
+
+    public VerifiedCredentialCache(@Value("${app.security.verified-credential-cache.maximum-size:10000}") long maximumSize,
+                                   @Value("${app.security.verified-credential-cache.ttl:60s}") Duration ttl,
+                                   MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        byte[] keyBytes = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(keyBytes);
+        this.key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+
+    /**
+     * Проверяет, были ли эти учетные данные недавно успешно проверены.
+     *
+     * @param userName          имя пользователя
+     * @param presentedPassword предъявленный пароль
+     * @param storedHash        хеш пароля пользователя в базе данных
+     * @return boolean true, если учетные данные есть в кеше
+     */
+    public boolean isVerified(String userName, String presentedPassword, String storedHash) {
+        byte[] verified = cache.getIfPresent(userName);
+        return verified != null && MessageDigest.isEqual(verified, hmac(userName, presentedPassword, storedHash));
+    }
+
+
+    /**
+     * Запоминает успешно проверенные учетные данные.
+     *
+     * @param userName          имя пользователя
+     * @param presentedPassword предъявленный пароль
+     * @param storedHash        хеш пароля пользователя в базе данных
+     */
+    public void remember(String userName, String presentedPassword, String storedHash) {
+        cache.put(userName, hmac(userName, presentedPassword, storedHash));
+    }
+
+
+    /**
+     * Удаляет учетные данные пользователей из кеша.
+     * <p>
+     * Если вызов выполняется внутри транзакции, удаление выполняется после ее фиксации.
+     *
+     * @param userNames имена пользователей
+     */
+    public void evict(String... userNames) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(userNames);
+                }
+            });
+        } else {
+            invalidate(userNames);
+        }
+    }
+
+
+    private void invalidate(String... userNames) {
+        for (String userName : userNames) {
+            if (userName != null) {
+                cache.invalidate(userName);
+            }
+        }
+    }
+
+
+    private byte[] hmac(String userName, String presentedPassword, String storedHash) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            String message = userName + SEPARATOR + presentedPassword + SEPARATOR + storedHash;
+            return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм " + HMAC_ALGORITHM + " недоступен", e);
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import ru.kata.spring.boot_security.demo.dto.UserBatchResultDTO;
 import ru.kata.spring.boot_security.demo.dto.UserDTO;
+import ru.kata.spring.boot_security.demo.dto.UserPageDTO;
+import ru.kata.spring.boot_security.demo.dto.UserPatchDTO;
+import ru.kata.spring.boot_security.demo.dto.UserSearchDTO;
+import ru.kata.spring.boot_security.demo.helper.RoleMatch;
 import ru.kata.spring.boot_security.demo.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс для управления пользователями.
@@ -12,15 +20,33 @@ import java.util.List;
  */
 public interface UserService {
 
-    List<UserDTO> getAllUsers();
+    UserPageDTO getAllUsers(Long after, int limit);
+
+    String getUsersPageETag(Long after, int limit);
+
+    UserPageDTO getUsersByRoles(Collection<String> roleNames, RoleMatch match, Long after, int limit);
+
+    long countUsersByRole(String roleName);
 
     UserDTO getUserById(long id);
 
+    Optional<String> getUserETag(long id);
+
+    UserSearchDTO searchUsers(String query, int page, int size);
+
     UserDTO saveUser(User user);
 
+    List<UserBatchResultDTO> saveUsers(List<User> users);
+
     UserDTO updateUser(User user);
 
+    UserDTO patchUser(long id, long version, UserPatchDTO patch);
+
     String deleteUser(long id);
 
+    String deleteUsers(Collection<Long> ids);
+
+    void exportUsers(Consumer<UserDTO> consumer);
+
 }
 
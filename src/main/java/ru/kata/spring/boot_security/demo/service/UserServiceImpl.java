@@ -1,26 +1,67 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
-import jakarta.transaction.Transactional;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import ru.kata.spring.boot_security.demo.dto.UserBatchResultDTO;
 import ru.kata.spring.boot_security.demo.dto.UserDTO;
+import ru.kata.spring.boot_security.demo.dto.UserPageDTO;
+import ru.kata.spring.boot_security.demo.dto.UserPatchDTO;
+import ru.kata.spring.boot_security.demo.dto.UserRoleRow;
+import ru.kata.spring.boot_security.demo.dto.UserSearchDTO;
+import ru.kata.spring.boot_security.demo.dto.UserVersionRow;
+import ru.kata.spring.boot_security.demo.exception.exception.InvalidRequestParameterException;
+import ru.kata.spring.boot_security.demo.exception.exception.NoSuchRoleException;
 import ru.kata.spring.boot_security.demo.exception.exception.NoSuchUserException;
+import ru.kata.spring.boot_security.demo.exception.exception.PasswordHashingException;
 import ru.kata.spring.boot_security.demo.exception.exception.RoleCreationException;
 import ru.kata.spring.boot_security.demo.exception.exception.UserSaveException;
 import ru.kata.spring.boot_security.demo.exception.exception.UserUpdateException;
+import ru.kata.spring.boot_security.demo.exception.exception.UserVersionConflictException;
 import ru.kata.spring.boot_security.demo.helper.PasswordService;
+import ru.kata.spring.boot_security.demo.helper.RoleMatch;
 import ru.kata.spring.boot_security.demo.helper.RoleService;
+import ru.kata.spring.boot_security.demo.helper.UserETags;
 import ru.kata.spring.boot_security.demo.mapper.UserMapperWrapper;
+import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
 import ru.kata.spring.boot_security.demo.repositories.UserRepository;
+import ru.kata.spring.boot_security.demo.security.UserDetailsCache;
+import ru.kata.spring.boot_security.demo.util.userValidation.ValidationGroups;
 
-import java.util.Comparator;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "user.service", description = "Время выполнения методов UserService", histogram = true)
 public class UserServiceImpl implements UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
@@ -28,56 +69,160 @@ public class UserServiceImpl implements UserService {
     private final UserMapperWrapper userMapperWrapper;
     private final RoleService roleService;
     private final PasswordService passwordService;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final UserDetailsCache userDetailsCache;
 
     private static final String USER_WITH_THIS_ID_NOT_FOUND = "Пользователь с ID %d не найден";
     private static final String USER_LIST_IS_EMPTY = "Cписок пользователей пуст";
     private static final String ERROR_SAVING_USER = "Ошибка при сохранении пользователя";
     private static final String ERROR_UPDATING_USER = "Ошибка при обновлении пользователя";
+    private static final String USER_NAME_FIELD = "userName";
+    private static final String USER_NAME_REPEATED = "Имя пользователя повторяется в запросе";
+    private static final String USER_NAME_EXISTS = "Пользователь с таким именем уже существует";
+    private static final String USER_VERSION_CONFLICT = "Пользователь с ID %d был изменен: версия %d устарела";
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int MIN_SEARCH_QUERY_LENGTH = 2;
 
     /**
-     * Получает всех пользователей вместе с их ролями из базы данных.
+     * Получает страницу пользователей вместе с их ролями из базы данных (курсорная пагинация по ID).
      * <p>
-     * Метод findAll() из UserRepository возвращает список пользователей с их ролями.
-     * Каждый пользователь преобразуется в объект UserDTO с помощью метода convertToUserDTO() из UserMapper.
-     * Результат сортируется по ID и собирается в список.
+     * Метод findIdsAfter() из UserRepository выбирает limit + 1 ID пользователей, следующих за курсором after.
+     * Лишний ID нужен только для того, чтобы определить, есть ли следующая страница.
+     * Метод findRowsByIdIn() выбирает пользователей страницы вместе с их ролями одним запросом, сразу в виде строк UserRoleRow,
+     * которые собираются в объекты UserDTO методом toUserDTOs() без создания сущностей и без UserMapper.
+     * Выполняется в транзакции только для чтения.
      *
-     * @return список всех пользователей в виде UserDTO
-     * @throws NoSuchUserException с сообщением "Cписок пользователей пуст"
+     * @param after ID, после которого начинается страница (null - первая страница)
+     * @param limit размер страницы, ограничивается значениями от 1 до MAX_PAGE_SIZE
+     * @return страница пользователей в виде UserPageDTO с курсором следующей страницы
+     * @throws NoSuchUserException с сообщением "Cписок пользователей пуст", если пуста первая страница
      */
     @Override
-    public List<UserDTO> getAllUsers() {
-        logger.debug("Запрос на получение всех пользователей");
+    @Transactional(readOnly = true)
+    public UserPageDTO getAllUsers(Long after, int limit) {
+        logger.debug("Запрос на получение страницы пользователей: after = {}, limit = {}", after, limit);
 
-        List<User> users = userRepository.findAll();
-        if (users.isEmpty()) {
+        int pageSize = pageSize(limit);
+        List<Long> ids = userRepository.findIdsAfter(after == null ? 0L : after, Limit.of(pageSize + 1));
+        if (ids.isEmpty() && after == null) {
             throw new NoSuchUserException(USER_LIST_IS_EMPTY);
         }
 
-        List<UserDTO> userDTO = users.stream()
-                .sorted(Comparator.comparing(User::getId, Comparator.nullsLast(Long::compareTo)))
-                .map(userMapperWrapper::convertToUserDTO)
+        UserPageDTO userPageDTO = toUserPage(ids, pageSize);
+        logger.info("Получена страница пользователей: {}, следующий курсор = {}", userPageDTO.getUsers(), userPageDTO.getNextCursor());
+        return userPageDTO;
+    }
+
+    /**
+     * Получает страницу пользователей, отфильтрованных по ролям (курсорная пагинация по ID).
+     * <p>
+     * Роли определяются по имени через RoleService без создания отсутствующих ролей. Методы findIdsWithAnyRoleAfter()
+     * и findIdsWithAllRolesAfter() из UserRepository выбирают limit + 1 ID пользователей только из таблицы user_roles по индексу
+     * (role_id, user_id), после чего пользователи страницы выбираются вместе с ролями методом findRowsByIdIn(), как в getAllUsers().
+     * Несуществующие роли при match = ANY не учитываются; при match = ALL ни один пользователь не может иметь
+     * несуществующую роль, поэтому возвращается пустая страница без запроса к user_roles.
+     * Пустой результат фильтрации - пустая страница, а не ошибка.
+     *
+     * @param roleNames имена ролей
+     * @param match     ANY - хотя бы одна из ролей, ALL - все роли
+     * @param after     ID, после которого начинается страница (null - первая страница)
+     * @param limit     размер страницы, ограничивается значениями от 1 до MAX_PAGE_SIZE
+     * @return страница пользователей в виде UserPageDTO с курсором следующей страницы
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public UserPageDTO getUsersByRoles(Collection<String> roleNames, RoleMatch match, Long after, int limit) {
+        logger.debug("Запрос на получение страницы пользователей по ролям: roles = {}, match = {}, after = {}, limit = {}",
+                roleNames, match, after, limit);
+
+        Set<String> uniqueNames = new LinkedHashSet<>(roleNames);
+        List<Integer> roleIds = roleService.findRoles(uniqueNames).values().stream()
+                .map(Role::getId)
                 .toList();
+        int pageSize = pageSize(limit);
+        long cursor = after == null ? 0L : after;
 
-        logger.info("Получен список всех пользователей: {}", userDTO);
-        return userDTO;
+        List<Long> ids;
+        if (roleIds.isEmpty() || (match == RoleMatch.ALL && roleIds.size() < uniqueNames.size())) {
+            ids = List.of();
+        } else if (match == RoleMatch.ALL) {
+            ids = userRepository.findIdsWithAllRolesAfter(roleIds, roleIds.size(), cursor, pageSize + 1);
+        } else {
+            ids = userRepository.findIdsWithAnyRoleAfter(roleIds, cursor, pageSize + 1);
+        }
+
+        UserPageDTO userPageDTO = toUserPage(ids, pageSize);
+        logger.info("Получена страница пользователей с ролями {} ({}): {}, следующий курсор = {}",
+                uniqueNames, match, userPageDTO.getUsers().size(), userPageDTO.getNextCursor());
+        return userPageDTO;
+    }
+
+    /**
+     * Подсчитывает пользователей с заданной ролью.
+     * <p>
+     * Метод countByRoleId() из UserRepository считает строки user_roles по индексу, без загрузки пользователей.
+     *
+     * @param roleName имя роли
+     * @return количество пользователей с ролью
+     * @throws NoSuchRoleException если роль не существует
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long countUsersByRole(String roleName) {
+        Role role = roleService.getRole(roleName);
+        return userRepository.countByRoleId(role.getId());
+    }
+
+    /**
+     * Вычисляет ETag страницы пользователей без загрузки их данных.
+     * <p>
+     * Метод findVersionsAfter() из UserRepository выбирает только ID и версии тех же limit + 1 пользователей, что и getAllUsers().
+     * ETag - хеш SHA-256 пар пользователей страницы, поэтому он меняется при изменении, удалении или добавлении
+     * любого пользователя страницы, а также при появлении или исчезновении следующей страницы.
+     *
+     * @param after ID, после которого начинается страница (null - первая страница)
+     * @param limit размер страницы, ограничивается значениями от 1 до MAX_PAGE_SIZE
+     * @return ETag страницы (без кавычек)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public String getUsersPageETag(Long after, int limit) {
+        int pageSize = pageSize(limit);
+        List<UserVersionRow> versions = userRepository.findVersionsAfter(after == null ? 0L : after, Limit.of(pageSize + 1));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < versions.size(); i++) {
+                UserVersionRow row = versions.get(i);
+                // Лишняя строка влияет только на наличие следующей страницы, поэтому ее версия не учитывается
+                String entry = i < pageSize ? row.id() + ":" + row.version() + ";" : "next;";
+                digest.update(entry.getBytes(StandardCharsets.US_ASCII));
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+        }
     }
 
     /**
      * Получает пользователя с его ролями по ID.
      * <p>
-     * Метод findById() из UserRepository возвращает Optional, содержащий пользователя, если он существует.
-     * Пользователь преобразуется в объект UserDTO с помощью метода convertToUserDTO() из UserMapper.
+     * Метод findRowsById() из UserRepository выбирает данные пользователя и его роли сразу в виде строк UserRoleRow,
+     * которые собираются в объект UserDTO методом toUserDTOs(). Выполняется в транзакции только для чтения.
      *
      * @param id идентификатор пользователя
      * @return пользователь в виде UserDTO
      * @throws NoSuchUserException с сообщением "Пользователь с ID %d не найден", если пользователь с указанным ID не найден
      */
     @Override
+    @Transactional(readOnly = true)
     public UserDTO getUserById(long id) {
         logger.debug("Запрос на получение пользователя с ID = {}", id);
 
-        UserDTO userDTO = userRepository.findById(id)
-                .map(userMapperWrapper::convertToUserDTO)
+        UserDTO userDTO = toUserDTOs(userRepository.findRowsById(id)).stream()
+                .findFirst()
                 .orElseThrow(() ->
                         new NoSuchUserException(String.format(USER_WITH_THIS_ID_NOT_FOUND, id)));
 
@@ -85,90 +230,321 @@ public class UserServiceImpl implements UserService {
         return userDTO;
     }
 
+    /**
+     * Вычисляет ETag пользователя по его версии без загрузки данных пользователя.
+     *
+     * @param id идентификатор пользователя
+     * @return Optional<String> ETag пользователя (без кавычек), пустой, если пользователь не найден
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<String> getUserETag(long id) {
+        return userRepository.findVersionById(id).map(version -> UserETags.format(id, version));
+    }
+
+    /**
+     * Ищет пользователей, у которых имя, фамилия или email начинаются со строки поиска (без учета регистра).
+     * <p>
+     * Метод searchIds() из UserRepository выбирает страницу ID, отсортированных по релевантности, используя индексы по префиксу.
+     * Данные пользователей и их роли выбираются методом findRowsByIdIn() и возвращаются в порядке релевантности.
+     * Символы % и _ в строке поиска экранируются и ищутся как обычные символы.
+     * Строка поиска короче MIN_SEARCH_QUERY_LENGTH символов отклоняется: пустой префикс совпал бы со всеми пользователями,
+     * и сортировка по релевантности выполнялась бы по всей таблице.
+     *
+     * @param query строка поиска
+     * @param page  номер страницы, начиная с 0
+     * @param size  размер страницы, ограничивается значениями от 1 до MAX_SEARCH_PAGE_SIZE
+     * @return страница результатов поиска в виде UserSearchDTO
+     * @throws InvalidRequestParameterException если строка поиска короче MIN_SEARCH_QUERY_LENGTH символов
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public UserSearchDTO searchUsers(String query, int page, int size) {
+        logger.debug("Запрос на поиск пользователей: q = {}, page = {}, size = {}", query, page, size);
+
+        String normalizedQuery = query.strip().toLowerCase(Locale.ROOT);
+        if (normalizedQuery.length() < MIN_SEARCH_QUERY_LENGTH) {
+            throw new InvalidRequestParameterException("Строка поиска должна содержать не менее " + MIN_SEARCH_QUERY_LENGTH + " символов");
+        }
+        String prefix = normalizedQuery
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_") + "%";
+        int pageSize = Math.min(Math.max(size, 1), MAX_SEARCH_PAGE_SIZE);
+        Slice<Long> ids = userRepository.searchIds(normalizedQuery, prefix, PageRequest.of(Math.max(page, 0), pageSize));
+
+        List<UserDTO> users = List.of();
+        if (ids.hasContent()) {
+            Map<Long, UserDTO> usersById = toUserDTOs(userRepository.findRowsByIdIn(ids.getContent())).stream()
+                    .collect(Collectors.toMap(UserDTO::getId, Function.identity()));
+            users = ids.getContent().stream()
+                    .map(usersById::get)
+                    .toList();
+        }
+
+        logger.info("Найдено пользователей по запросу '{}': {}, есть следующая страница = {}", query, users.size(), ids.hasNext());
+        return new UserSearchDTO(users, ids.getNumber(), ids.hasNext());
+    }
+
     /**
      * Сохраняет нового пользователя в базе данных.
      * <p>
-     * Валидация ролей и установка их пользователю.
-     * Кодирует и устанавливает пароль.
+     * Кодирует пароль, проверяет роли и устанавливает их пользователю до открытия транзакции, чтобы соединение с базой данных
+     * не удерживалось на время кодирования, а создание отсутствующей роли (отдельная транзакция RoleDirectory)
+     * не занимало второе соединение. В транзакции:
+     * Устанавливает закодированный пароль.
      * Сохраняет пользователя.
      * Выполняет конвертацию в UserDTO.
      * Пробрасывает возможные исключения пойманные при валидации ролей, кодирования пароля, сохранении и конвертации пользователя.
      *
      * @param user объект User, содержащий данные нового пользователя
      * @return сохраненный пользователь в виде UserDTO
-     * @throws RoleCreationException если роль не найдена после попытки создать ее
-     * @throws UserSaveException   с сообщением "Ошибка при сохранении пользователя"
+     * @throws RoleCreationException    если роль не найдена после попытки создать ее
+     * @throws PasswordHashingException если пул кодирования паролей перегружен
+     * @throws UserSaveException        с сообщением "Ошибка при сохранении пользователя"
      */
     @Override
-    @Transactional
     public UserDTO saveUser(User user) {
         logger.debug("Запрос на сохранение пользователя: {}", user);
 
         try {
-            user = roleService.validateRoles(user);
-            user.setPassword(passwordService.encodePassword(user.getPassword()));
+            String encodedPassword = passwordService.encodePassword(user.getPassword());
+            roleService.validateRoles(user);
+
+            return transactionTemplate.execute(status -> {
+                user.setPassword(encodedPassword);
 
-            User savedUser = userRepository.save(user);
-            UserDTO userDTO = userMapperWrapper.convertToUserDTO(savedUser);
+                User savedUser = userRepository.save(user);
+                UserDTO userDTO = userMapperWrapper.convertToUserDTO(savedUser);
 
-            logger.info("Пользователь успешно сохранен: {}", userDTO);
-            return userDTO;
+                logger.info("Пользователь успешно сохранен: {}", userDTO);
+                return userDTO;
+            });
 
-        } catch (RoleCreationException e) {
+        } catch (RoleCreationException | PasswordHashingException e) {
             throw e; // Пробросить исключение, чтобы оно могло быть обработано в контроллере
         } catch (Exception e) {
             throw new UserSaveException(ERROR_SAVING_USER);
         }
     }
 
+    /**
+     * Сохраняет группу новых пользователей в базе данных пакетными INSERT.
+     * <p>
+     * Валидирует каждого пользователя по группе ValidationGroups.Create, невалидные пользователи не сохраняются.
+     * Пользователи с именем, которое повторяется в запросе (кроме первого вхождения) или уже существует в базе данных
+     * (один запрос IN на порцию имен), также не сохраняются и получают ошибку поля userName,
+     * поэтому повторяющееся имя не нарушает уникальный индекс при сохранении и не отменяет сохранение остальных пользователей.
+     * Кодирует пароли параллельно в пуле кодирования паролей и проверяет роли (один раз для каждого имени роли на всю группу)
+     * до открытия транзакции. В транзакции:
+     * Сохраняет валидных пользователей пакетами с помощью метода saveAllInBatches() из UserRepository.
+     * Сохранение выполняется в одной транзакции: при ошибке базы данных не сохраняется ни один пользователь.
+     *
+     * @param users пользователи, содержащие данные новых пользователей
+     * @return отчет по каждому пользователю в порядке запроса в виде списка UserBatchResultDTO
+     * @throws RoleCreationException    если роль не найдена после попытки создать ее
+     * @throws PasswordHashingException если пул кодирования паролей перегружен
+     * @throws UserSaveException        с сообщением "Ошибка при сохранении пользователя"
+     */
+    @Override
+    public List<UserBatchResultDTO> saveUsers(List<User> users) {
+        logger.debug("Запрос на пакетное сохранение пользователей, количество: {}", users.size());
+
+        UserBatchResultDTO[] results = new UserBatchResultDTO[users.size()];
+        List<User> validUsers = new ArrayList<>(users.size());
+        List<Integer> validIndexes = new ArrayList<>(users.size());
+        Set<String> requestedUserNames = new HashSet<>();
+        for (int i = 0; i < users.size(); i++) {
+            Map<String, String> errors = validateUser(users.get(i));
+            if (errors.isEmpty() && !requestedUserNames.add(users.get(i).getUserName())) {
+                errors.put(USER_NAME_FIELD, USER_NAME_REPEATED);
+            }
+            if (errors.isEmpty()) {
+                validUsers.add(users.get(i));
+                validIndexes.add(i);
+            } else {
+                results[i] = UserBatchResultDTO.invalid(i, errors);
+            }
+        }
+
+        try {
+            rejectExistingUserNames(validUsers, validIndexes, results, userRepository.findExistingUserNames(requestedUserNames));
+
+            List<String> encodedPasswords = passwordService.encodePasswords(validUsers.stream().map(User::getPassword).toList());
+            for (int i = 0; i < validUsers.size(); i++) {
+                validUsers.get(i).setPassword(encodedPasswords.get(i));
+            }
+
+            roleService.validateRoles(validUsers);
+
+            transactionTemplate.executeWithoutResult(status -> userRepository.saveAllInBatches(validUsers));
+
+        } catch (RoleCreationException | PasswordHashingException e) {
+            throw e; // Пробросить исключение, чтобы оно могло быть обработано в контроллере
+        } catch (Exception e) {
+            throw new UserSaveException(ERROR_SAVING_USER, e);
+        }
+
+        for (int i = 0; i < validUsers.size(); i++) {
+            results[validIndexes.get(i)] = UserBatchResultDTO.created(validIndexes.get(i), validUsers.get(i).getId());
+        }
+
+        logger.info("Пакетное сохранение завершено: сохранено {}, отклонено {}", validUsers.size(), users.size() - validUsers.size());
+        return Arrays.asList(results);
+    }
+
+
+    /**
+     * Исключает из сохранения пользователей, имена которых уже существуют в базе данных, и отмечает их в отчете.
+     *
+     * @param validUsers        пользователи, прошедшие валидацию (изменяется на месте)
+     * @param validIndexes      позиции этих пользователей в запросе (изменяется на месте)
+     * @param results           отчет по каждому пользователю в порядке запроса
+     * @param existingUserNames имена, которые уже существуют в базе данных
+     */
+    private static void rejectExistingUserNames(List<User> validUsers, List<Integer> validIndexes,
+                                                UserBatchResultDTO[] results, Set<String> existingUserNames) {
+        for (int i = validUsers.size() - 1; i >= 0; i--) {
+            if (existingUserNames.contains(validUsers.get(i).getUserName())) {
+                int index = validIndexes.remove(i);
+                validUsers.remove(i);
+                results[index] = UserBatchResultDTO.invalid(index, Map.of(USER_NAME_FIELD, USER_NAME_EXISTS));
+            }
+        }
+    }
+
+
+    /**
+     * Валидирует пользователя по группе ValidationGroups.Create.
+     *
+     * @param user пользователь
+     * @return Map<String, String> карта ошибок, где ключом является имя поля, а значением - сообщение об ошибке
+     */
+    private Map<String, String> validateUser(User user) {
+        Map<String, String> errors = new HashMap<>();
+        validator.validate(user, ValidationGroups.Create.class)
+                .forEach(violation -> errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return errors;
+    }
+
     /**
      * Обновляет существующего пользователя в базе данных.
      * <p>
+     * Кодирует новый пароль (если он изменен), проверяет роли и устанавливает их пользователю до открытия транзакции,
+     * чтобы соединение с базой данных не удерживалось на время кодирования и создания отсутствующей роли.
+     * В транзакции:
      * Поиск пользователя по его ID с помощью метода findById() из UserRepository.
-     * Валидация ролей и установка их пользователю.
      * Обрабатывает пароль с помощью метода passwordProcessing.
      * Сохраняет обновленного пользователя.
+     * Удаляет пользователя (под старым и новым именем) из кеша UserDetailsCache после фиксации транзакции.
      * Выполняет конвертацию в UserDTO.
      * Пробрасывает возможные исключения, пойманные при поиске пользователя по ID, валидации ролей, кодирования пароля, обновлении и конвертации пользователя.
      *
      * @param user объект User, содержащий обновленные данные пользователя
      * @return обновленный пользователь в виде UserDTO
-     * @throws NoSuchUserException с сообщением "Пользователь с ID %d не найден"
-     * @throws RoleCreationException "Ошибка при создании роли: "
-     * @throws UserUpdateException с сообщением "Ошибка при обновлении пользователя"
+     * @throws NoSuchUserException      с сообщением "Пользователь с ID %d не найден"
+     * @throws RoleCreationException    "Ошибка при создании роли: "
+     * @throws PasswordHashingException если пул кодирования паролей перегружен
+     * @throws UserUpdateException      с сообщением "Ошибка при обновлении пользователя"
      */
     @Override
-    @Transactional
     public UserDTO updateUser(User user) {
         logger.debug("Запрос на обновление пользователя: {}", user);
 
         Long userId = user.getId();
-        User existingUser = userRepository.findById(user.getId())
-                .orElseThrow(() ->
-                        new NoSuchUserException(String.format(USER_WITH_THIS_ID_NOT_FOUND, userId)));
+        try {
+            String encodedPassword = passwordService.encodePasswordIfChanged(user);
+            roleService.validateRoles(user);
+
+            return transactionTemplate.execute(status -> {
+                User existingUser = userRepository.findById(userId)
+                        .orElseThrow(() ->
+                                new NoSuchUserException(String.format(USER_WITH_THIS_ID_NOT_FOUND, userId)));
+
+                user.setPassword(passwordService.passwordProcessing(existingUser, encodedPassword));
+                user.setVersion(existingUser.getVersion());
+
+                User updatedUser = userRepository.save(user);
+                userDetailsCache.evict(existingUser.getUserName(), updatedUser.getUserName());
+                UserDTO userDTO = userMapperWrapper.convertToUserDTO(updatedUser);
+
+                logger.info("Пользователь успешно обновлен: {}", userDTO);
+                return userDTO;
+            });
+
+        } catch (NoSuchUserException | RoleCreationException | PasswordHashingException e) {
+            throw e; // Пробросить исключение, чтобы оно могло быть обработано в контроллере
+        } catch (Exception e) {
+            throw new UserUpdateException(ERROR_UPDATING_USER, e);
+        }
+    }
+
+    /**
+     * Частично обновляет пользователя: изменяются только переданные поля.
+     * <p>
+     * Пароль кодируется и роли определяются до открытия транзакции. В транзакции:
+     * Поля обновляются одним запросом UPDATE ... WHERE id = ? AND version = ?, без загрузки пользователя.
+     * Если ни одна строка не обновлена, версия пользователя проверяется отдельно, чтобы отличить отсутствие пользователя от конфликта версий.
+     * Роли (если переданы) заменяются изменением только разницы в user_roles.
+     * Возвращается обновленный пользователь, прочитанный в виде UserDTO.
+     * После фиксации транзакции пользователь удаляется из UserDetailsCache по ID.
+     *
+     * @param id      ID пользователя
+     * @param version версия пользователя, которую видел клиент (из заголовка If-Match)
+     * @param patch   поля, которые необходимо изменить
+     * @return обновленный пользователь в виде UserDTO
+     * @throws NoSuchUserException          если пользователь с указанным ID не найден
+     * @throws UserVersionConflictException если пользователь был изменен после получения версии клиентом
+     * @throws RoleCreationException        если роль не найдена после попытки создать ее
+     * @throws PasswordHashingException     если пул кодирования паролей перегружен
+     * @throws UserUpdateException          с сообщением "Ошибка при обновлении пользователя"
+     */
+    @Override
+    public UserDTO patchUser(long id, long version, UserPatchDTO patch) {
+        logger.debug("Запрос на частичное обновление пользователя с ID = {}, версия = {}: {}", id, version, patch);
 
         try {
-            user = roleService.validateRoles(user);
-            user.setPassword(passwordService.passwordProcessing(existingUser, user));
+            Map<String, Object> values = new HashMap<>();
+            putIfPresent(values, "userName", patch.getUserName());
+            putIfPresent(values, "lastName", patch.getLastName());
+            putIfPresent(values, "phoneNumber", patch.getPhoneNumber());
+            putIfPresent(values, "email", patch.getEmail());
+            if (patch.getPassword() != null) {
+                values.put("password", passwordService.encodePassword(patch.getPassword()));
+            }
+            Set<Role> roles = patch.getRoles() == null ? null : roleService.resolveRoles(patch.getRoles());
 
-            User updatedUser = userRepository.save(user);
-            UserDTO userDTO = userMapperWrapper.convertToUserDTO(updatedUser);
+            return transactionTemplate.execute(status -> {
+                if (userRepository.updateIfVersionMatches(id, version, values) == 0) {
+                    if (userRepository.findVersionById(id).isEmpty()) {
+                        throw new NoSuchUserException(String.format(USER_WITH_THIS_ID_NOT_FOUND, id));
+                    }
+                    throw new UserVersionConflictException(String.format(USER_VERSION_CONFLICT, id, version));
+                }
+                if (roles != null) {
+                    userRepository.replaceRoles(id, roles.stream().map(Role::getId).toList());
+                }
+                userDetailsCache.evictUsers(List.of(id));
+                UserDTO userDTO = toUserDTOs(userRepository.findRowsById(id)).get(0);
 
-            logger.info("Пользователь успешно обновлен: {}", userDTO);
-            return userDTO;
+                logger.info("Пользователь с ID = {} частично обновлен: {}", id, userDTO);
+                return userDTO;
+            });
 
-        } catch (RoleCreationException e) {
+        } catch (NoSuchUserException | UserVersionConflictException | RoleCreationException | PasswordHashingException e) {
             throw e; // Пробросить исключение, чтобы оно могло быть обработано в контроллере
         } catch (Exception e) {
             throw new UserUpdateException(ERROR_UPDATING_USER, e);
         }
     }
+
     /**
      * Удаляет пользователя из базы данных по его ID.
      * <p>
-     * Метод выполняет поиск пользователя с помощью метода findById() из UserRepository. Если пользователь найден,
-     * он каскадно удаляется из базы данных вместе с его ролями с помощью метода deleteById().
-     * Если пользователь не найден, выбрасывается исключение NoSuchUserException с соответствующим сообщением.
+     * Метод deleteUsersWithRoles() из UserRepository удаляет связи пользователя с ролями и самого пользователя двумя запросами,
+     * без предварительной загрузки пользователя. Если ни одна строка не удалена, пользователь не найден.
+     * После фиксации транзакции пользователь удаляется из кеша UserDetailsCache по ID
+     * (записи VerifiedCredentialCache без пользователя в UserDetailsCache не используются и истекают сами).
      *
      * @param id идентификатор пользователя, который должен быть удален
      * @return сообщение об успешном удалении пользователя
@@ -179,13 +555,114 @@ public class UserServiceImpl implements UserService {
     public String deleteUser(long id) {
         logger.debug("Запрос на удаление пользователя: {}", id);
 
-        return userRepository.findById(id)
-                .map(user -> {
-                    userRepository.deleteById(id);
-                    String successMessage = String.format("Пользователь с ID = %d успешно удален", id);
-                    logger.info(successMessage);
-                    return successMessage;
-                })
-                .orElseThrow(() -> new NoSuchUserException(String.format(USER_WITH_THIS_ID_NOT_FOUND, id)));
+        if (userRepository.deleteUsersWithRoles(List.of(id)) == 0) {
+            throw new NoSuchUserException(String.format(USER_WITH_THIS_ID_NOT_FOUND, id));
+        }
+        userDetailsCache.evictUsers(List.of(id));
+        String successMessage = String.format("Пользователь с ID = %d успешно удален", id);
+        logger.info(successMessage);
+        return successMessage;
+    }
+
+
+    /**
+     * Удаляет пользователей с заданными ID в одной транзакции.
+     * <p>
+     * Повторяющиеся ID учитываются один раз, несуществующие ID пропускаются.
+     * Удаление выполняется методом deleteUsersWithRoles() из UserRepository порциями, двумя запросами на порцию.
+     * После фиксации транзакции пользователи удаляются из кеша UserDetailsCache по ID.
+     *
+     * @param ids идентификаторы пользователей, которые должны быть удалены
+     * @return сообщение с количеством удаленных пользователей
+     */
+    @Override
+    @Transactional
+    public String deleteUsers(Collection<Long> ids) {
+        logger.debug("Запрос на удаление пользователей: {} ID", ids.size());
+
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        int deleted = uniqueIds.isEmpty() ? 0 : userRepository.deleteUsersWithRoles(uniqueIds);
+        userDetailsCache.evictUsers(uniqueIds);
+        String successMessage = String.format("Удалено пользователей: %d из %d", deleted, uniqueIds.size());
+        logger.info(successMessage);
+        return successMessage;
+    }
+
+
+    /**
+     * Выгружает всех пользователей вместе с их ролями, передавая их по одному в consumer.
+     * <p>
+     * Метод streamAllWithRoles() из UserRepository читает пользователей однонаправленным курсором порциями,
+     * поэтому список всех пользователей не создается ни в виде User, ни в виде UserDTO.
+     * Каждый пользователь преобразуется в объект UserDTO и сразу же отключается от контекста персистентности,
+     * чтобы объем занимаемой памяти не зависел от количества пользователей.
+     *
+     * @param consumer получатель пользователей в виде UserDTO (например, запись в HTTP ответ)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsers(Consumer<UserDTO> consumer) {
+        logger.debug("Запрос на выгрузку всех пользователей");
+
+        long count = 0;
+        try (Stream<User> users = userRepository.streamAllWithRoles()) {
+            for (User user : (Iterable<User>) users::iterator) {
+                consumer.accept(userMapperWrapper.convertToUserDTO(user));
+                entityManager.detach(user);
+                count++;
+            }
+        }
+
+        logger.info("Выгружено пользователей: {}", count);
+    }
+
+
+    /**
+     * Собирает строки UserRoleRow в объекты UserDTO: по одному на пользователя, с набором его ролей.
+     * <p>
+     * Строки одного пользователя объединяются по ID, порядок пользователей сохраняется.
+     * Роли создаются как простые объекты Role (ID и имя), не связанные с контекстом персистентности.
+     *
+     * @param rows строки пользователей и их ролей
+     * @return List<UserDTO> список пользователей в порядке строк
+     */
+    private List<UserDTO> toUserDTOs(List<UserRoleRow> rows) {
+        Map<Long, UserDTO> usersById = new LinkedHashMap<>();
+        for (UserRoleRow row : rows) {
+            UserDTO userDTO = usersById.computeIfAbsent(row.id(), id -> new UserDTO(id, row.userName(), row.lastName(),
+                    row.phoneNumber(), row.email(), null, new HashSet<>()));
+            if (row.roleId() != null) {
+                userDTO.getRoles().add(new Role(row.roleId(), row.roleName(), new HashSet<>()));
+            }
+        }
+        return new ArrayList<>(usersById.values());
+    }
+
+
+    /**
+     * Собирает страницу пользователей по ID, выбранным с запасом в один ID для определения следующей страницы.
+     *
+     * @param ids      ID пользователей в порядке возрастания (не больше pageSize + 1)
+     * @param pageSize размер страницы
+     * @return UserPageDTO пользователи страницы с ролями и курсор следующей страницы
+     */
+    private UserPageDTO toUserPage(List<Long> ids, int pageSize) {
+        boolean hasNext = ids.size() > pageSize;
+        List<Long> pageIds = hasNext ? ids.subList(0, pageSize) : ids;
+        List<UserDTO> userDTO = pageIds.isEmpty() ? List.of() : toUserDTOs(userRepository.findRowsByIdIn(pageIds));
+        Long nextCursor = hasNext ? pageIds.get(pageIds.size() - 1) : null;
+        return new UserPageDTO(userDTO, nextCursor);
+    }
+
+
+    private static int pageSize(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    }
+
+
+    private static void putIfPresent(Map<String, Object> values, String attribute, Object value) {
+        if (value != null) {
+            values.put(attribute, value);
+        }
     }
 }
@@ -8,6 +8,7 @@ import java.lang.annotation.*;
  * Аннотация для валидации пароля.
  * <p>
  * Аннотация @PasswordConstraint используется для проверки того, что значение пароля не пустое.
+ * Если optional = true, значение null допускается (поле не передано, например при частичном обновлении).
  * Валидация выполняется с помощью класса PasswordValidator.
  * <p>
  * Аннотация может применяться к полям и другим аннотациям.
@@ -23,6 +24,12 @@ public @interface PasswordConstraint {
      */
     String message() default "Пароль не может быть пустым";
 
+    /**
+     * Допускается ли значение null (пароль не передан и не изменяется).
+     * @return true, если значение null допускается
+     */
+    boolean optional() default false;
+
     /**
      * Группы валидации, к которым относится это ограничение.
      * Используется для группировки ограничений в разные наборы и применения разных наборов ограничений в разных контекстах.
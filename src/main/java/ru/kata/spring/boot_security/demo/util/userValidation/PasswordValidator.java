@@ -7,21 +7,21 @@ import jakarta.validation.ConstraintValidatorContext;
  * Валидатор для аннотации @PasswordConstraint.
  * <p>
  * Этот класс реализует интерфейс ConstraintValidator и обеспечивает логику проверки для аннотации @PasswordConstraint.
- * Проверяет, что значение строки не является null и не пустым.
+ * Проверяет, что значение строки не является null и не пустым (null допускается, если optional = true).
  */
 public class PasswordValidator implements ConstraintValidator<PasswordConstraint, String> {
+    private boolean optional;
 
     /**
      * Инициализация валидатора.
      * <p>
-     * Этот метод вызывается при инициализации валидатора. В данном случае он не выполняет никаких действий.
-     * Инициализация в методе initialize требуется, если аннотация имеет параметры например как в аннотации CheckEmail
+     * Этот метод вызывается при инициализации валидатора и сохраняет параметр optional аннотации.
      *
      * @param password экземпляр аннотации @PasswordConstraint
      */
     @Override
     public void initialize(PasswordConstraint password) {
-        // Инициализация не требуется
+        this.optional = password.optional();
     }
 
     /**
@@ -31,10 +31,13 @@ public class PasswordValidator implements ConstraintValidator<PasswordConstraint
      *
      * @param password значение, которое необходимо проверить
      * @param context  контекст для предоставления информации и операций для создания сообщения об ошибке
-     * @return true, если значение пароля не null и не пустое, иначе false
+     * @return true, если значение пароля не пустое (или null при optional = true), иначе false
      */
     @Override
     public boolean isValid(String password, ConstraintValidatorContext context) {
-        return password != null && !password.trim().isEmpty();
+        if (password == null) {
+            return optional;
+        }
+        return !password.trim().isEmpty();
     }
 }
\ No newline at end of file
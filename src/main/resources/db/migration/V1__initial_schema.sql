@@ -0,0 +1,45 @@
+-- Initial schema for User, Role and the user_roles join table (PostgreSQL).
+-- Column types match the entity mappings, Hibernate validates them on startup (ddl-auto=validate).
+
+CREATE SEQUENCE users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE roles
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_roles_name UNIQUE (name)
+);
+
+CREATE TABLE users
+(
+    id           BIGINT PRIMARY KEY,
+    version      BIGINT,
+    user_name    VARCHAR(255),
+    lastname     VARCHAR(255),
+    phone_number VARCHAR(255),
+    email        VARCHAR(255),
+    password     VARCHAR(255)
+);
+
+-- The primary key (user_id, role_id) serves the joins from users to their roles
+CREATE TABLE user_roles
+(
+    user_id BIGINT  NOT NULL,
+    role_id INTEGER NOT NULL,
+    CONSTRAINT pk_user_roles PRIMARY KEY (user_id, role_id),
+    CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_user_roles_role FOREIGN KEY (role_id) REFERENCES roles (id)
+);
+
+-- Login (findUserWithRolesByUserName) and findByUserName look users up by exact name on every authentication.
+-- The name identifies the user for HTTP Basic and sessions, so it is also unique.
+CREATE UNIQUE INDEX ux_users_user_name ON users (user_name);
+
+-- Joins from roles to their users and the foreign key check on role deletion; user_id makes the index covering
+CREATE INDEX idx_user_roles_role_id ON user_roles (role_id, user_id);
+
+-- Prefix search on users (GET /api/v1/users/search): functional indexes on lower(column).
+-- text_pattern_ops lets PostgreSQL use the index for LIKE 'prefix%' regardless of the database collation.
+CREATE INDEX idx_users_user_name_lower ON users (lower(user_name) text_pattern_ops);
+CREATE INDEX idx_users_lastname_lower ON users (lower(lastname) text_pattern_ops);
+CREATE INDEX idx_users_email_lower ON users (lower(email) text_pattern_ops);
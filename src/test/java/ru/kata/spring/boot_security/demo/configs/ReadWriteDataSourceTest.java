@@ -0,0 +1,141 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.kata.spring.boot_security.demo.controller.UserRestController;
+import ru.kata.spring.boot_security.demo.repositories.UserRepository;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверяет разделение чтения и записи между основной базой данных и репликой (ReadWriteDataSourceConfig).
+ * <p>
+ * Пулы соединений основной базы данных и реплики подключаются к одной базе данных H2 в памяти, которая играет роль
+ * реплики без отставания; база данных, на которую направлено соединение, определяется по метрике datasource.routing.
+ * Проверка с двумя отдельными экземплярами PostgreSQL описана в README.
+ */
+@ActiveProfiles("h2")
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadWriteDataSourceTest.DATABASE_URL,
+        "app.datasource.read.enabled=true",
+        "app.datasource.read.urls=" + ReadWriteDataSourceTest.DATABASE_URL,
+        "app.datasource.read.read-your-writes-window=1m"
+})
+class ReadWriteDataSourceTest {
+    static final String DATABASE_URL =
+            "jdbc:h2:mem:read-write-routing;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserRestController userRestController;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+
+    @Test
+    void readOnlyTransactionUsesReplica() {
+        assertRouted(0, 1, () -> userService.getAllUsers(null, 10));
+    }
+
+
+    @Test
+    void userLoadingForAuthenticationUsesPrimary() {
+        assertRouted(1, 0, () -> userRepository.findUserWithRolesByUserName("admin"));
+    }
+
+
+    @Test
+    void pageETagAndPageAreReadFromOneReplica() {
+        authenticate("reader", "ROLE_ADMIN");
+        assertRouted(0, 1, () -> userRestController.getAllUsers(null, 10, null, "any", webRequest()));
+    }
+
+
+    @Test
+    void userETagAndUserAreReadFromOneReplica() {
+        long id = userRepository.findByUserName("admin").get(0).getId();
+        authenticate("reader", "ROLE_ADMIN");
+        assertRouted(0, 1, () -> userRestController.getUserById(id, webRequest()));
+    }
+
+
+    @Test
+    void writeTransactionUsesPrimary() {
+        assertRouted(1, 0, this::write);
+    }
+
+
+    @Test
+    void readsOfUserWhoJustWroteUsePrimaryUntilWindowEnds() {
+        authenticate("writer");
+        write();
+
+        assertRouted(1, 0, () -> userService.getAllUsers(null, 10));
+
+        authenticate("reader");
+        assertRouted(0, 1, () -> userService.getAllUsers(null, 10));
+    }
+
+
+    private void write() {
+        transactionTemplate.executeWithoutResult(status -> userRepository.updatePasswordIfUnchanged(-1L, "", ""));
+    }
+
+
+    private void assertRouted(double primary, double replica, Runnable action) {
+        double primaryBefore = connections(PRIMARY);
+        double replicaBefore = connections(REPLICA);
+        action.run();
+        assertAll(
+                () -> assertEquals(primary, connections(PRIMARY) - primaryBefore, PRIMARY),
+                () -> assertEquals(replica, connections(REPLICA) - replicaBefore, REPLICA));
+    }
+
+
+    private double connections(String target) {
+        return meterRegistry.counter("datasource.routing", "target", target).count();
+    }
+
+
+    private static void authenticate(String userName, String... authorities) {
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(userName, null,
+                Arrays.stream(authorities).map(SimpleGrantedAuthority::new).toList()));
+    }
+
+
+    private static ServletWebRequest webRequest() {
+        return new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+    }
+}
@@ -0,0 +1,61 @@
+package ru.kata.spring.boot_security.demo.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Результат нагрузки на один эндпоинт: количество запросов, ошибок, перцентили задержки и пропускная способность.
+ *
+ * @param endpoint       имя эндпоинта
+ * @param requests       количество выполненных запросов
+ * @param errors         количество запросов с ответом не 2xx или завершившихся исключением
+ * @param p50            медиана задержки
+ * @param p99            99-й перцентиль задержки
+ * @param max            максимальная задержка
+ * @param requestsPerSec запросов в секунду
+ */
+public record LoadResult(String endpoint, int requests, int errors, Duration p50, Duration p99, Duration max, double requestsPerSec) {
+
+    /**
+     * Вычисляет результат по задержкам отдельных запросов.
+     *
+     * @param endpoint      имя эндпоинта
+     * @param latencyNanos  задержки запросов в наносекундах
+     * @param errors        количество ошибок
+     * @param elapsedNanos  общее время нагрузки в наносекундах
+     * @return LoadResult результат нагрузки
+     */
+    static LoadResult of(String endpoint, long[] latencyNanos, int errors, long elapsedNanos) {
+        long[] sorted = latencyNanos.clone();
+        Arrays.sort(sorted);
+        return new LoadResult(endpoint, sorted.length, errors,
+                Duration.ofNanos(percentile(sorted, 50)),
+                Duration.ofNanos(percentile(sorted, 99)),
+                Duration.ofNanos(sorted.length == 0 ? 0 : sorted[sorted.length - 1]),
+                sorted.length * 1_000_000_000.0 / elapsedNanos);
+    }
+
+
+    /**
+     * Возвращает перцентиль отсортированных значений (метод ближайшего ранга).
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+
+    public double errorRate() {
+        return requests == 0 ? 0 : (double) errors / requests;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("%-28s %7d %6d %10.2f %10.2f %10.2f %10.1f", endpoint, requests, errors,
+                p50.toNanos() / 1e6, p99.toNanos() / 1e6, max.toNanos() / 1e6, requestsPerSec);
+    }
+}
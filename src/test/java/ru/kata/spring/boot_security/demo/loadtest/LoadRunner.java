@@ -0,0 +1,90 @@
+package ru.kata.spring.boot_security.demo.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Выполняет запросы к одному эндпоинту из нескольких потоков одновременно и измеряет задержку каждого запроса.
+ * <p>
+ * Поток worker выполняет запросы с номерами worker, worker + concurrency, worker + 2 * concurrency и т.д.,
+ * поэтому запросы с одинаковым остатком от деления на concurrency всегда выполняются одним потоком последовательно.
+ */
+public class LoadRunner {
+
+    /**
+     * Создает запрос по номеру потока и номеру запроса.
+     */
+    @FunctionalInterface
+    public interface RequestFactory {
+        HttpRequest create(int worker, int index);
+    }
+
+    private final HttpClient httpClient;
+    private final int concurrency;
+
+    public LoadRunner(HttpClient httpClient, int concurrency) {
+        this.httpClient = httpClient;
+        this.concurrency = concurrency;
+    }
+
+
+    /**
+     * Выполняет requests запросов к эндпоинту в concurrency потоков.
+     *
+     * @param endpoint       имя эндпоинта для отчета
+     * @param requests       общее количество запросов
+     * @param requestFactory фабрика запросов
+     * @return LoadResult задержки, ошибки и пропускная способность
+     */
+    public LoadResult run(String endpoint, int requests, RequestFactory requestFactory) throws InterruptedException {
+        long[] latencies = new long[requests];
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Integer>> workers = new ArrayList<>(concurrency);
+            long startedAt = System.nanoTime();
+            for (int worker = 0; worker < concurrency; worker++) {
+                int workerIndex = worker;
+                workers.add(executor.submit(() -> runWorker(workerIndex, requests, requestFactory, latencies)));
+            }
+            int errors = 0;
+            for (Future<Integer> worker : workers) {
+                errors += worker.get();
+            }
+            return LoadResult.of(endpoint, latencies, errors, System.nanoTime() - startedAt);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private int runWorker(int worker, int requests, RequestFactory requestFactory, long[] latencies) {
+        int errors = 0;
+        for (int index = worker; index < requests; index += concurrency) {
+            HttpRequest request = requestFactory.create(worker, index);
+            long startedAt = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() / 100 != 2) {
+                    errors++;
+                }
+            } catch (IOException e) {
+                errors++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return errors + 1;
+            }
+            latencies[index] = System.nanoTime() - startedAt;
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,263 @@
+package ru.kata.spring.boot_security.demo.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.helper.RoleDirectory;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.repositories.UserRepository;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочный тест REST API пользователей (UserRestController).
+ * <p>
+ * Приложение запускается на случайном порту с базой данных H2 в памяти (профили h2 и loadtest). Для каждого эндпоинта
+ * (GET списка, GET по ID, POST, PUT, DELETE) нагрузка выполняется дважды: с HTTP Basic в каждом запросе
+ * и с cookie сессии, полученной после первой аутентификации. Для каждого прогона выводятся p50/p99 задержки
+ * и количество запросов в секунду, результаты сохраняются в target/loadtest-result.json.
+ * Тест завершается ошибкой, если результаты выходят за пороги loadtest.threshold.* (см. application-loadtest.properties).
+ * <p>
+ * Тест исключен из обычной сборки, запуск: mvn -Ploadtest test
+ */
+@Tag("load")
+@ActiveProfiles({"h2", "loadtest"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserApiLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(UserApiLoadTest.class);
+    private static final String PASSWORD = "password";
+    private static final String BASIC_USER = "loadtest-basic";
+    private static final int TARGETS_PER_WORKER = 25;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleDirectory roleDirectory;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private int concurrency;
+    private int requests;
+    private String passwordHash;
+    private List<String> sessionCookies;
+    private List<Long> targetIds;
+
+
+    @BeforeEach
+    void setUp() throws IOException, InterruptedException {
+        concurrency = environment.getRequiredProperty("loadtest.concurrency", Integer.class);
+        requests = environment.getRequiredProperty("loadtest.requests", Integer.class);
+        passwordHash = passwordEncoder.encode(PASSWORD);
+
+        userRepository.save(user(BASIC_USER, "ADMIN"));
+        List<User> sessionUsers = userRepository.saveAll(
+                IntStream.range(0, concurrency).mapToObj(i -> user("loadtest-session-" + i, "ADMIN")).toList());
+        targetIds = seed(concurrency * TARGETS_PER_WORKER, i -> user("loadtest-target-" + i, "USER"));
+
+        // Одна сессия на пользователя (maximumSessions = 1), поэтому у каждого потока свой пользователь
+        sessionCookies = new ArrayList<>(concurrency);
+        for (User sessionUser : sessionUsers) {
+            sessionCookies.add(login(sessionUser));
+        }
+    }
+
+
+    @Test
+    void userApiMeetsThresholds() throws InterruptedException, IOException {
+        LoadRunner runner = new LoadRunner(httpClient, concurrency);
+        runner.run("warmup", environment.getRequiredProperty("loadtest.warmup-requests", Integer.class),
+                (worker, index) -> basic(get("/api/v1/users/" + targetIds.get(index % targetIds.size()))).build());
+
+        List<LoadResult> results = new ArrayList<>();
+        for (boolean session : new boolean[]{false, true}) {
+            String mode = session ? "[session]" : "[basic]";
+            List<Long> deleteIds = seed(requests, i -> user("loadtest-delete-" + mode + i, "USER"));
+
+            results.add(runner.run("list " + mode, requests, (worker, index) ->
+                    auth(session, worker, get("/api/v1/users?limit=20")).build()));
+            results.add(runner.run("get " + mode, requests, (worker, index) ->
+                    auth(session, worker, get("/api/v1/users/" + targetIds.get(index % targetIds.size()))).build()));
+            results.add(runner.run("create " + mode, requests, (worker, index) ->
+                    auth(session, worker, json("/api/v1/users")
+                            .POST(body(userJson("loadtest-created-" + mode + index, PASSWORD)))).build()));
+            // Размер targetIds кратен concurrency: каждый пользователь изменяется только одним потоком, без конфликтов версий
+            results.add(runner.run("update " + mode, requests, (worker, index) ->
+                    auth(session, worker, json("/api/v1/users/" + targetIds.get(index % targetIds.size()))
+                            .PUT(body(userJson("loadtest-target-" + index % targetIds.size(), null)))).build()));
+            results.add(runner.run("delete " + mode, requests, (worker, index) ->
+                    auth(session, worker, get("/api/v1/users/" + deleteIds.get(index)).DELETE()).build()));
+        }
+
+        report(results);
+        assertAll(results.stream().map(this::thresholds));
+    }
+
+
+    private Executable thresholds(LoadResult result) {
+        String endpoint = result.endpoint().substring(0, result.endpoint().indexOf(' '));
+        Duration maxP99 = threshold(endpoint, "p99", Duration.class);
+        double minRps = threshold(endpoint, "min-rps", Double.class);
+        double maxErrorRate = environment.getRequiredProperty("loadtest.max-error-rate", Double.class);
+        return () -> assertAll(result.endpoint(),
+                () -> assertTrue(result.errorRate() <= maxErrorRate,
+                        () -> result.endpoint() + ": ошибок " + result.errors() + " из " + result.requests()),
+                () -> assertTrue(result.p99().compareTo(maxP99) <= 0,
+                        () -> result.endpoint() + ": p99 " + result.p99().toMillis() + " мс > " + maxP99.toMillis() + " мс"),
+                () -> assertTrue(result.requestsPerSec() >= minRps,
+                        () -> String.format("%s: %.1f запросов/с < %.1f", result.endpoint(), result.requestsPerSec(), minRps)));
+    }
+
+
+    private <T> T threshold(String endpoint, String name, Class<T> type) {
+        T defaultValue = environment.getRequiredProperty("loadtest.threshold." + name, type);
+        return environment.getProperty("loadtest.threshold." + endpoint + "." + name, type, defaultValue);
+    }
+
+
+    private void report(List<LoadResult> results) throws IOException {
+        StringBuilder table = new StringBuilder(String.format("%n%-28s %7s %6s %10s %10s %10s %10s%n",
+                "endpoint", "count", "errors", "p50 ms", "p99 ms", "max ms", "req/s"));
+        List<Map<String, Object>> json = new ArrayList<>();
+        for (LoadResult result : results) {
+            table.append(result).append(System.lineSeparator());
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("endpoint", result.endpoint());
+            row.put("requests", result.requests());
+            row.put("errors", result.errors());
+            row.put("p50Ms", result.p50().toNanos() / 1e6);
+            row.put("p99Ms", result.p99().toNanos() / 1e6);
+            row.put("maxMs", result.max().toNanos() / 1e6);
+            row.put("requestsPerSec", result.requestsPerSec());
+            json.add(row);
+        }
+        logger.info("Результаты нагрузочного теста (concurrency = {}):{}", concurrency, table);
+        Path reportFile = Path.of("target", "loadtest-result.json");
+        Files.createDirectories(reportFile.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), json);
+    }
+
+
+    private List<Long> seed(int count, IntFunction<User> factory) {
+        return userRepository.saveAll(IntStream.range(0, count).mapToObj(factory).toList()).stream()
+                .map(User::getId)
+                .toList();
+    }
+
+
+    private User user(String userName, String roleName) {
+        Role role = roleDirectory.getOrCreate(roleName);
+        return User.builder()
+                .userName(userName)
+                .lastName("Нагрузка")
+                .phoneNumber("123-45-67")
+                .email(userName + "@abc.com")
+                .password(passwordHash)
+                .roles(Set.of(role))
+                .build();
+    }
+
+
+    private String login(User user) throws IOException, InterruptedException {
+        HttpResponse<Void> response = httpClient.send(basic(get("/api/v1/users/" + user.getId()), user.getUserName()).build(),
+                HttpResponse.BodyHandlers.discarding());
+        return response.headers().allValues("Set-Cookie").stream()
+                .filter(cookie -> cookie.startsWith("JSESSIONID="))
+                .map(cookie -> cookie.substring(0, cookie.indexOf(';')))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Сессия не создана для " + user.getUserName()));
+    }
+
+
+    private HttpRequest.Builder auth(boolean session, int worker, HttpRequest.Builder request) {
+        return session ? request.header("Cookie", sessionCookies.get(worker)) : basic(request);
+    }
+
+
+    private HttpRequest.Builder basic(HttpRequest.Builder request) {
+        return basic(request, BASIC_USER);
+    }
+
+
+    private HttpRequest.Builder basic(HttpRequest.Builder request, String userName) {
+        String credentials = Base64.getEncoder().encodeToString((userName + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+        return request.header("Authorization", "Basic " + credentials);
+    }
+
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).timeout(Duration.ofSeconds(30));
+    }
+
+
+    private HttpRequest.Builder json(String path) {
+        return get(path).header("Content-Type", "application/json");
+    }
+
+
+    private HttpRequest.BodyPublisher body(Map<String, Object> value) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private Map<String, Object> userJson(String userName, String password) {
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("userName", userName);
+        user.put("lastName", "Нагрузка");
+        user.put("phoneNumber", "765-43-21");
+        user.put("email", userName + "@abc.com");
+        if (password != null) {
+            user.put("password", password);
+        }
+        user.put("roles", List.of(Map.of("name", "USER")));
+        return user;
+    }
+}
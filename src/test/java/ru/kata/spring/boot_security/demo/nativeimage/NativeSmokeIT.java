@@ -0,0 +1,152 @@
+package ru.kata.spring.boot_security.demo.nativeimage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Smoke-тест native-исполняемого файла приложения.
+ * <p>
+ * Запускает файл, собранный профилем native, с локальной базой данных (по умолчанию - PostgreSQL из application.properties,
+ * параметры подключения можно передать через -Dnative.smoke.args="spring.datasource.url=... spring.datasource.password=...",
+ * к аргументам без префикса добавляется "--").
+ * Проверяет, что приложение запускается, применяет миграции, создает начальных пользователей и отвечает на запросы
+ * с аутентификацией, валидацией и маппингом пользователей. Вывод приложения сохраняется в target/native-smoke.log.
+ * <p>
+ * Запуск: mvn -Pnative verify
+ */
+class NativeSmokeIT {
+    private static final Logger logger = LoggerFactory.getLogger(NativeSmokeIT.class);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private Process application;
+    private int port;
+
+
+    @BeforeEach
+    void startApplication() throws IOException, InterruptedException {
+        Path image = Path.of(System.getProperty("native.image.path", "target/spring-boot_security-demo"));
+        assertTrue(Files.isExecutable(image), () -> "Native-файл не найден: " + image + " (mvn -Pnative package)");
+        port = freePort();
+
+        List<String> command = new ArrayList<>(List.of(image.toString(), "--server.port=" + port));
+        String args = System.getProperty("native.smoke.args", "").trim();
+        if (!args.isEmpty()) {
+            Arrays.stream(args.split("\\s+"))
+                    .map(arg -> arg.startsWith("-") ? arg : "--" + arg)
+                    .forEach(command::add);
+        }
+        Path log = Path.of("target", "native-smoke.log");
+        Files.createDirectories(log.getParent());
+
+        long startedAt = System.nanoTime();
+        application = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        waitUntilHealthy();
+        logger.info("Native-приложение готово через {} мс", Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+    }
+
+
+    @AfterEach
+    void stopApplication() throws InterruptedException {
+        if (application != null) {
+            application.destroy();
+            application.waitFor();
+        }
+    }
+
+
+    @Test
+    void servesAuthenticatedUserRequests() throws IOException, InterruptedException {
+        HttpResponse<String> users = send(request("/api/v1/users?limit=10").GET());
+        assertEquals(200, users.statusCode(), users::body);
+        assertTrue(users.body().contains("\"userName\":\"admin\""), users::body);
+
+        String userName = "native-smoke-" + System.currentTimeMillis();
+        String newUser = "{\"userName\":\"" + userName + "\",\"lastName\":\"Проверка\",\"phoneNumber\":\"123-45-67\"," +
+                "\"email\":\"" + userName + "@abc.com\",\"password\":\"password\",\"roles\":[{\"name\":\"USER\"}]}";
+        HttpResponse<String> created = send(request("/api/v1/users")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(newUser)));
+        assertEquals(201, created.statusCode(), created::body);
+
+        HttpResponse<String> invalid = send(request("/api/v1/users")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"userName\":\"\",\"roles\":[]}")));
+        assertEquals(400, invalid.statusCode(), invalid::body);
+
+        String id = created.body().replaceAll(".*\"id\":(\\d+).*", "$1");
+        HttpResponse<String> deleted = send(request("/api/v1/users/" + id).DELETE());
+        assertEquals(200, deleted.statusCode(), deleted::body);
+
+        HttpResponse<String> apiDocs = send(request("/v3/api-docs").GET());
+        assertEquals(200, apiDocs.statusCode(), apiDocs::body);
+    }
+
+
+    private void waitUntilHealthy() throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            assertTrue(application.isAlive(), "Native-приложение завершилось, см. target/native-smoke.log");
+            try {
+                HttpResponse<String> health = send(HttpRequest.newBuilder(uri("/actuator/health")).GET());
+                if (health.statusCode() == 200) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // приложение еще не открыло порт
+            } catch (IOException e) {
+                logger.debug("Проверка состояния не удалась: {}", e.getMessage());
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Native-приложение не запустилось за " + STARTUP_TIMEOUT.toSeconds() + " с, см. target/native-smoke.log");
+    }
+
+
+    private HttpRequest.Builder request(String path) {
+        String credentials = Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(uri(path)).header("Authorization", "Basic " + credentials);
+    }
+
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.timeout(Duration.ofSeconds(10)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
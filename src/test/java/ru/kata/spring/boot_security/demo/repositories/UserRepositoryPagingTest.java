@@ -0,0 +1,106 @@
+package ru.kata.spring.boot_security.demo.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.configs.DataSourceProxyConfig;
+import ru.kata.spring.boot_security.demo.helper.RoleDirectory;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Проверяет, что списки пользователей с ролями загружаются без пагинации в памяти.
+ * <p>
+ * Роли пользователей, загруженных без @EntityGraph, выбираются пакетами (@BatchSize), а запрос с пагинацией
+ * по соединению с коллекцией завершается ошибкой (hibernate.query.fail_on_pagination_over_collection_fetch).
+ */
+@ActiveProfiles("h2")
+@SpringBootTest
+class UserRepositoryPagingTest {
+    private static final AtomicInteger USER_NUMBER = new AtomicInteger();
+    private static final int USERS = 3;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleDirectory roleDirectory;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Long> ids = new ArrayList<>();
+
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < USERS; i++) {
+            String userName = "paging-" + USER_NUMBER.incrementAndGet();
+            ids.add(userRepository.save(User.builder()
+                    .userName(userName)
+                    .lastName("Страниц")
+                    .phoneNumber("123-45-67")
+                    .email(userName + "@abc.com")
+                    .password("$2a$10$notARealHashButNeverChecked")
+                    .roles(Set.of(roleDirectory.getOrCreate("USER"), roleDirectory.getOrCreate("ADMIN")))
+                    .build()).getId());
+        }
+        entityManagerFactory.getCache().evictAll();
+        QueryCountHolder.clear();
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        QueryCountHolder.clear();
+    }
+
+
+    @Test
+    void rolesOfUsersLoadedWithoutEntityGraphAreFetchedInOneBatch() {
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("SELECT u FROM User u WHERE u.id IN :ids", User.class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(user -> user.getRoles().size()));
+
+        assertEquals(2, queryCount().getSelect(), "select");
+    }
+
+
+    @Test
+    void paginationOverCollectionFetchFails() {
+        assertThrows(PersistenceException.class, () -> transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("SELECT u FROM User u LEFT JOIN FETCH u.roles ORDER BY u.id", User.class)
+                .setMaxResults(USERS)
+                .getResultList()));
+    }
+
+
+    private static QueryCount queryCount() {
+        QueryCount count = QueryCountHolder.get(DataSourceProxyConfig.DATA_SOURCE_NAME);
+        return count == null ? new QueryCount() : count;
+    }
+}
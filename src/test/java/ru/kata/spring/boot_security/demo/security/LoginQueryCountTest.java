@@ -0,0 +1,168 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.configs.DataSourceProxyConfig;
+import ru.kata.spring.boot_security.demo.helper.RoleDirectory;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.repositories.UserRepository;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет количество SQL-запросов при аутентификации.
+ * <p>
+ * Первая аутентификация загружает пользователя вместе с ролями одним запросом, повторные обслуживаются
+ * из UserDetailsCache и VerifiedCredentialCache без обращения к базе данных.
+ * Хеш пароля без префикса алгоритма перекодируется при первой аутентификации в пуле кодирования паролей
+ * (таймер password.encode) и сохраняется одним запросом UPDATE.
+ * Удаление пользователя по ID удаляет его из UserDetailsCache.
+ */
+@ActiveProfiles("h2")
+@SpringBootTest
+class LoginQueryCountTest {
+    private static final String PASSWORD = "password";
+    private static final AtomicInteger USER_NUMBER = new AtomicInteger();
+
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleDirectory roleDirectory;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String userName;
+
+
+    @BeforeEach
+    void setUp() {
+        userName = saveUser(passwordEncoder.encode(PASSWORD));
+        QueryCountHolder.clear();
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        QueryCountHolder.clear();
+    }
+
+
+    @Test
+    void loadUserByUsernameSelectsUserWithRolesOnceAndThenUsesCache() {
+        userDetailsService.loadUserByUsername(userName);
+        assertEquals(1, queryCount().getTotal(), "первая загрузка");
+
+        QueryCountHolder.clear();
+        userDetailsService.loadUserByUsername(userName);
+        assertEquals(0, queryCount().getTotal(), "повторная загрузка");
+    }
+
+
+    @Test
+    void deleteUserByIdEvictsCachedUser() {
+        userDetailsService.loadUserByUsername(userName);
+        long id = userRepository.findByUserName(userName).get(0).getId();
+
+        userService.deleteUser(id);
+
+        QueryCountHolder.clear();
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername(userName));
+        assertEquals(1, queryCount().getSelect(), "загрузка после удаления");
+    }
+
+
+    @Test
+    void authenticateSelectsUserWithRolesOnceAndThenUsesCache() {
+        authenticationManager.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(userName, PASSWORD));
+        QueryCount firstLogin = queryCount();
+        assertEquals(1, firstLogin.getSelect(), "первая аутентификация");
+        assertEquals(1, firstLogin.getTotal(), "первая аутентификация");
+
+        QueryCountHolder.clear();
+        authenticationManager.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(userName, PASSWORD));
+        assertEquals(0, queryCount().getTotal(), "повторная аутентификация");
+    }
+
+
+    @Test
+    void authenticateRehashesLegacyPasswordOnceWithOneUpdate() {
+        String legacyUserName = saveUser(new BCryptPasswordEncoder(4).encode(PASSWORD));
+        QueryCountHolder.clear();
+        long encodedBefore = encodeCount();
+
+        authenticationManager.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(legacyUserName, PASSWORD));
+        QueryCount firstLogin = queryCount();
+        assertAll(
+                () -> assertEquals(1, firstLogin.getSelect(), "первая аутентификация: select"),
+                () -> assertEquals(1, firstLogin.getUpdate(), "первая аутентификация: update"),
+                () -> assertEquals(1, encodeCount() - encodedBefore, "первая аутентификация: password.encode"));
+        String rehashedPassword = userRepository.findByUserName(legacyUserName).get(0).getPassword();
+        assertTrue(rehashedPassword.startsWith("{bcrypt}"), rehashedPassword);
+
+        QueryCountHolder.clear();
+        authenticationManager.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(legacyUserName, PASSWORD));
+        QueryCount secondLogin = queryCount();
+        assertAll(
+                () -> assertEquals(1, secondLogin.getSelect(), "повторная аутентификация после перекодирования: select"),
+                () -> assertEquals(0, secondLogin.getUpdate(), "повторная аутентификация после перекодирования: update"));
+    }
+
+
+    private String saveUser(String encodedPassword) {
+        String newUserName = "login-querycount-" + USER_NUMBER.incrementAndGet();
+        userRepository.save(User.builder()
+                .userName(newUserName)
+                .lastName("Запросов")
+                .phoneNumber("123-45-67")
+                .email(newUserName + "@abc.com")
+                .password(encodedPassword)
+                .roles(Set.of(roleDirectory.getOrCreate("ADMIN"), roleDirectory.getOrCreate("USER")))
+                .build());
+        return newUserName;
+    }
+
+
+    private long encodeCount() {
+        return meterRegistry.find("password.encode").timers().stream().mapToLong(timer -> timer.count()).sum();
+    }
+
+
+    private static QueryCount queryCount() {
+        QueryCount count = QueryCountHolder.get(DataSourceProxyConfig.DATA_SOURCE_NAME);
+        return count == null ? new QueryCount() : count;
+    }
+}
@@ -0,0 +1,317 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.configs.DataSourceProxyConfig;
+import ru.kata.spring.boot_security.demo.dto.UserBatchResultDTO;
+import ru.kata.spring.boot_security.demo.dto.UserPatchDTO;
+import ru.kata.spring.boot_security.demo.exception.exception.InvalidRequestParameterException;
+import ru.kata.spring.boot_security.demo.exception.exception.UserVersionConflictException;
+import ru.kata.spring.boot_security.demo.helper.RoleDirectory;
+import ru.kata.spring.boot_security.demo.helper.RoleMatch;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.repositories.UserRepository;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет точное количество SQL-запросов каждого метода UserServiceImpl.
+ * <p>
+ * Запросы подсчитываются datasource-proxy (см. DataSourceProxyConfig) в потоке теста. Если изменение сопоставлений User.roles
+ * или запросов UserRepository вернет N+1 запросы или лишние обращения к базе данных, тест завершится ошибкой.
+ * При сохранении новых пользователей Hibernate может выполнить один запрос к последовательности users_seq
+ * (allocationSize = 50), поэтому для этих методов количество SELECT проверяется как "не больше одного".
+ */
+@ActiveProfiles("h2")
+@SpringBootTest
+class UserServiceQueryCountTest {
+    private static final AtomicInteger USER_NUMBER = new AtomicInteger();
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleDirectory roleDirectory;
+
+    private User user;
+
+
+    @BeforeEach
+    void setUp() {
+        roleDirectory.getOrCreate("ADMIN");
+        user = userRepository.save(user(nextUserName(), "USER"));
+        QueryCountHolder.clear();
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        QueryCountHolder.clear();
+    }
+
+
+    @Test
+    void getAllUsersSelectsIdsAndRowsOfPage() {
+        userService.getAllUsers(null, 20);
+        assertStatements(2, 0, 0, 0);
+    }
+
+
+    @Test
+    void getAllUsersAfterLastPageSelectsOnlyIds() {
+        userService.getAllUsers(Long.MAX_VALUE, 20);
+        assertStatements(1, 0, 0, 0);
+    }
+
+
+    @Test
+    void getUsersPageETagSelectsOnlyVersions() {
+        userService.getUsersPageETag(null, 20);
+        assertStatements(1, 0, 0, 0);
+    }
+
+
+    @Test
+    void getUsersByAnyRoleSelectsIdsAndRowsOfPage() {
+        userService.getUsersByRoles(List.of("USER", "ADMIN"), RoleMatch.ANY, user.getId() - 1, 20);
+        assertStatements(2, 0, 0, 0);
+    }
+
+
+    @Test
+    void getUsersByAllRolesSelectsIdsAndRowsOfPage() {
+        userService.getUsersByRoles(List.of("USER"), RoleMatch.ALL, user.getId() - 1, 20);
+        assertStatements(2, 0, 0, 0);
+    }
+
+
+    @Test
+    void getUsersByRolesAfterLastPageSelectsOnlyIds() {
+        userService.getUsersByRoles(List.of("USER"), RoleMatch.ANY, Long.MAX_VALUE, 20);
+        assertStatements(1, 0, 0, 0);
+    }
+
+
+    @Test
+    void countUsersByRoleSelectsOnce() {
+        assertTrue(userService.countUsersByRole("USER") >= 1);
+        assertStatements(1, 0, 0, 0);
+    }
+
+
+    @Test
+    void getUserByIdSelectsUserWithRolesOnce() {
+        userService.getUserById(user.getId());
+        assertStatements(1, 0, 0, 0);
+    }
+
+
+    @Test
+    void getUserETagSelectsOnlyVersion() {
+        userService.getUserETag(user.getId());
+        assertStatements(1, 0, 0, 0);
+    }
+
+
+    @Test
+    void searchUsersSelectsIdsAndRowsOfPage() {
+        userService.searchUsers(user.getUserName(), 0, 10);
+        assertStatements(2, 0, 0, 0);
+    }
+
+
+    @Test
+    void searchUsersWithoutMatchesSelectsOnlyIds() {
+        userService.searchUsers("no-such-user", 0, 10);
+        assertStatements(1, 0, 0, 0);
+    }
+
+
+    @Test
+    void searchUsersWithTooShortQueryExecutesNoStatements() {
+        assertThrows(InvalidRequestParameterException.class, () -> userService.searchUsers(" a ", 0, 10));
+        assertStatements(0, 0, 0, 0);
+    }
+
+
+    @Test
+    void saveUserInsertsUserAndRoles() {
+        userService.saveUser(newUser(nextUserName(), "USER"));
+        assertInsertStatements(2);
+    }
+
+
+    @Test
+    void saveUsersInsertsUsersAndRolesInOneBatchEach() {
+        userService.saveUsers(List.of(newUser(nextUserName(), "USER"), newUser(nextUserName(), "USER"), newUser(nextUserName(), "ADMIN")));
+        assertInsertStatements(2, 1);
+    }
+
+
+    @Test
+    void saveUsersRejectsRepeatedAndExistingUserNamesAndSavesOtherUsers() {
+        String repeatedUserName = nextUserName();
+        String otherUserName = nextUserName();
+
+        List<UserBatchResultDTO> results = userService.saveUsers(List.of(
+                newUser(user.getUserName(), "USER"),
+                newUser(repeatedUserName, "USER"),
+                newUser(repeatedUserName, "ADMIN"),
+                newUser(otherUserName, "USER")));
+
+        assertEquals(List.of(UserBatchResultDTO.Status.INVALID, UserBatchResultDTO.Status.CREATED,
+                        UserBatchResultDTO.Status.INVALID, UserBatchResultDTO.Status.CREATED),
+                results.stream().map(UserBatchResultDTO::getStatus).toList());
+        assertTrue(results.get(0).getErrors().containsKey("userName"));
+        assertTrue(results.get(2).getErrors().containsKey("userName"));
+        assertEquals(1, userRepository.findByUserName(repeatedUserName).size());
+        assertEquals(1, userRepository.findByUserName(otherUserName).size());
+    }
+
+
+    @Test
+    void updateUserSelectsOnceAndUpdatesOnce() {
+        User changedUser = newUser(user.getUserName(), "USER");
+        changedUser.setId(user.getId());
+        changedUser.setLastName("Измененный");
+        changedUser.setPassword(null);
+
+        userService.updateUser(changedUser);
+        assertStatements(1, 0, 1, 0);
+    }
+
+
+    @Test
+    void patchUserUpdatesAndSelectsResult() {
+        userService.patchUser(user.getId(), user.getVersion(), new UserPatchDTO(null, "Измененный", null, null, null, null));
+        assertStatements(1, 0, 1, 0);
+    }
+
+
+    @Test
+    void patchUserWithRolesChangesOnlyRoleDifference() {
+        userService.patchUser(user.getId(), user.getVersion(),
+                new UserPatchDTO(null, null, null, null, null, Set.of(new Role("ADMIN"))));
+        assertStatements(1, 1, 1, 1);
+    }
+
+
+    @Test
+    void patchUserWithOutdatedVersionChecksVersionOnce() {
+        assertThrows(UserVersionConflictException.class, () ->
+                userService.patchUser(user.getId(), user.getVersion() + 1, new UserPatchDTO(null, "Измененный", null, null, null, null)));
+        assertStatements(1, 0, 1, 0);
+    }
+
+
+    @Test
+    void deleteUserDeletesRolesAndUser() {
+        userService.deleteUser(user.getId());
+        assertStatements(0, 0, 0, 2);
+    }
+
+
+    @Test
+    void deleteUsersDeletesRolesAndUsersOfAllIds() {
+        User otherUser = userRepository.save(user(nextUserName(), "USER"));
+        QueryCountHolder.clear();
+
+        userService.deleteUsers(List.of(user.getId(), otherUser.getId()));
+        assertStatements(0, 0, 0, 2);
+    }
+
+
+    @Test
+    void exportUsersSelectsAllUsersWithRolesOnce() {
+        userService.exportUsers(userDTO -> {
+        });
+        assertStatements(1, 0, 0, 0);
+    }
+
+
+    private static void assertStatements(long select, long insert, long update, long delete) {
+        QueryCount count = queryCount();
+        assertAll(
+                () -> assertEquals(select, count.getSelect(), "select"),
+                () -> assertEquals(insert, count.getInsert(), "insert"),
+                () -> assertEquals(update, count.getUpdate(), "update"),
+                () -> assertEquals(delete, count.getDelete(), "delete"));
+    }
+
+
+    /**
+     * Проверяет количество INSERT, а также что единственным SELECT может быть запрос к последовательности users_seq.
+     */
+    private static void assertInsertStatements(long insert) {
+        assertInsertStatements(insert, 0);
+    }
+
+
+    /**
+     * Проверяет количество INSERT, а также что кроме select ожидаемых SELECT может выполняться только запрос
+     * к последовательности users_seq.
+     */
+    private static void assertInsertStatements(long insert, long select) {
+        QueryCount count = queryCount();
+        assertAll(
+                () -> assertTrue(count.getSelect() >= select && count.getSelect() <= select + 1, () -> "select: " + count.getSelect()),
+                () -> assertEquals(insert, count.getInsert(), "insert"),
+                () -> assertEquals(0, count.getUpdate(), "update"),
+                () -> assertEquals(0, count.getDelete(), "delete"));
+    }
+
+
+    private static QueryCount queryCount() {
+        QueryCount count = QueryCountHolder.get(DataSourceProxyConfig.DATA_SOURCE_NAME);
+        return count == null ? new QueryCount() : count;
+    }
+
+
+    private static String nextUserName() {
+        return "querycount-" + USER_NUMBER.incrementAndGet();
+    }
+
+
+    /**
+     * Создает пользователя в том виде, в котором он приходит в запросе: с исходным паролем и ролями, заданными только именем.
+     */
+    private static User newUser(String userName, String roleName) {
+        return User.builder()
+                .userName(userName)
+                .lastName("Запросов")
+                .phoneNumber("123-45-67")
+                .email(userName + "@abc.com")
+                .password("password")
+                .roles(Set.of(new Role(roleName)))
+                .build();
+    }
+
+
+    private User user(String userName, String roleName) {
+        return User.builder()
+                .userName(userName)
+                .lastName("Запросов")
+                .phoneNumber("123-45-67")
+                .email(userName + "@abc.com")
+                .password("$2a$10$notARealHashButNeverChecked")
+                .roles(Set.of(roleDirectory.getOrCreate(roleName)))
+                .build();
+    }
+}